@@ -0,0 +1,107 @@
+package crawler.bench;
+
+import crawler.BoundedExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Submission and completion of trivial tasks by several threads, with tags drawn from a Zipf distribution.
+ * Compares {@link BoundedExecutor} with {@link ComputeBoundedExecutor}.
+ *
+ * @author Bogdan Nikitin
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(4)
+public class BoundedExecutorBenchmark {
+    private static final int BATCH = 1024;
+
+    public enum Implementation {
+        LOCK_FREE,
+        COMPUTE
+    }
+
+    @State(Scope.Benchmark)
+    public static class Executor {
+        @Param({"LOCK_FREE", "COMPUTE"})
+        private Implementation implementation;
+        @Param("4")
+        private int bound;
+        @Param("8")
+        private int threads;
+
+        private ExecutorService pool;
+        private AutoCloseable closeable;
+        private BiConsumer<Runnable, Integer> executor;
+
+        @Setup
+        public void setup() {
+            pool = Executors.newFixedThreadPool(threads);
+            switch (implementation) {
+                case LOCK_FREE -> {
+                    final BoundedExecutor<Integer> bounded = new BoundedExecutor<>(pool, bound);
+                    closeable = bounded;
+                    executor = bounded::execute;
+                }
+                case COMPUTE -> {
+                    final ComputeBoundedExecutor<Integer> bounded = new ComputeBoundedExecutor<>(pool, bound);
+                    closeable = pool::close;
+                    executor = bounded::execute;
+                }
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            closeable.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Tags {
+        @Param({"1", "64", "4096"})
+        private int tags;
+        @Param({"0", "1.2"})
+        private double skew;
+
+        private final Integer[] sequence = new Integer[BATCH];
+
+        @Setup
+        public void setup() {
+            final double[] cumulative = new double[tags];
+            double total = 0;
+            for (int i = 0; i < tags; i++) {
+                total += 1 / Math.pow(i + 1, skew);
+                cumulative[i] = total;
+            }
+            final SplittableRandom random = new SplittableRandom(42);
+            for (int i = 0; i < BATCH; i++) {
+                final double value = random.nextDouble() * total;
+                int tag = 0;
+                while (cumulative[tag] < value) {
+                    tag++;
+                }
+                sequence[i] = tag;
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void executeBatch(final Executor executor, final Tags tags) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(BATCH);
+        for (final Integer tag : tags.sequence) {
+            executor.executor.accept(latch::countDown, tag);
+        }
+        latch.await();
+    }
+}
@@ -0,0 +1,65 @@
+package crawler.bench;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Former implementation of {@link crawler.BoundedExecutor} taking {@link ConcurrentHashMap#compute} bin lock
+ * on every submission and completion. Kept as a baseline for {@link BoundedExecutorBenchmark}.
+ *
+ * @param <T> type of tag.
+ * @author Bogdan Nikitin
+ */
+class ComputeBoundedExecutor<T> {
+    private static class DeferredEntry {
+        public final Deque<Runnable> tasks = new ArrayDeque<>();
+        public int executing;
+    }
+
+    private final ConcurrentMap<T, DeferredEntry> deferred = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final int bound;
+
+    ComputeBoundedExecutor(final ExecutorService executor, final int bound) {
+        this.executor = executor;
+        this.bound = bound;
+    }
+
+    public void execute(final Runnable command, final T tag) {
+        deferred.compute(tag, (ignored, info) -> {
+            if (info == null) {
+                info = new DeferredEntry();
+            }
+            if (info.executing == bound) {
+                info.tasks.add(command);
+            } else {
+                info.executing++;
+                addTask(command, tag);
+            }
+            return info;
+        });
+    }
+
+    private void addTask(final Runnable task, final T tag) {
+        executor.execute(() -> {
+            task.run();
+            finishTask(tag);
+        });
+    }
+
+    private void finishTask(final T tag) {
+        deferred.computeIfPresent(tag, (ignored, info) -> {
+            if (info.tasks.isEmpty()) {
+                if (--info.executing == 0) {
+                    return null;
+                }
+            } else {
+                addTask(info.tasks.remove(), tag);
+            }
+            return info;
+        });
+    }
+}
@@ -0,0 +1,358 @@
+package crawler.bench;
+
+import crawler.Document;
+import crawler.Downloader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-memory {@link Downloader} serving a random link graph shaped like the real web.
+ * Out-degrees of pages follow a power law, pages are spread over hosts of Zipf-distributed sizes,
+ * a part of links stays on the same host, some pages fail to download or to be parsed,
+ * and the last pages form redirect-like loops.
+ *
+ * <p>Every page is generated on demand from the seed and its index,
+ * so the graph takes memory only for host boundaries and every crawl of it is the same.
+ * Page {@code p} of host {@code h} has URL {@code http://host<h>.test/page<p>}.
+ *
+ * @author Bogdan Nikitin
+ */
+public class SyntheticDownloader implements Downloader {
+    private static final String PAGE = "/page";
+
+    private final int pages;
+    private final long seed;
+    private final int minOutDegree;
+    private final int maxOutDegree;
+    private final double outDegreeExponent;
+    private final double sameHostLinkRate;
+    private final Latency latency;
+    private final long meanLatencyNanos;
+    private final double downloadErrorRate;
+    private final double extractErrorRate;
+    private final int loopPages;
+    private final int loopLength;
+    /** First page of every host, ascending, with {@code pages} appended. */
+    private final int[] hostStarts;
+
+    /**
+     * Distribution of download latency.
+     */
+    public enum Latency {
+        /** Downloads return immediately. */
+        NONE,
+        /** Every download takes mean latency. */
+        FIXED,
+        /** Download latency is uniform in {@code [0, 2 * mean]}. */
+        UNIFORM,
+        /** Download latency is exponential with the given mean, so some downloads are much slower than others. */
+        EXPONENTIAL
+    }
+
+    private SyntheticDownloader(final Builder builder) {
+        this.pages = builder.pages;
+        this.seed = builder.seed;
+        this.minOutDegree = builder.minOutDegree;
+        this.maxOutDegree = builder.maxOutDegree;
+        this.outDegreeExponent = builder.outDegreeExponent;
+        this.sameHostLinkRate = builder.sameHostLinkRate;
+        this.latency = builder.latency;
+        this.meanLatencyNanos = TimeUnit.MICROSECONDS.toNanos(builder.meanLatencyMicros);
+        this.downloadErrorRate = builder.downloadErrorRate;
+        this.extractErrorRate = builder.extractErrorRate;
+        this.loopPages = builder.loopPages;
+        this.loopLength = builder.loopLength;
+        this.hostStarts = hostStarts(builder.pages, builder.hosts, builder.hostSkew);
+    }
+
+    /**
+     * Creates builder of a graph with 10000 pages, out-degrees from 1 to 64 following power law with exponent 2,
+     * 100 hosts with Zipf exponent 1, half of links to the same host, no latency, no errors and no loops.
+     *
+     * @return new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private static int[] hostStarts(final int pages, final int hosts, final double skew) {
+        final double[] weights = new double[hosts];
+        double total = 0;
+        for (int i = 0; i < hosts; i++) {
+            weights[i] = 1 / Math.pow(i + 1, skew);
+            total += weights[i];
+        }
+        final int[] starts = new int[hosts + 1];
+        double cumulative = 0;
+        for (int i = 0; i < hosts; i++) {
+            starts[i] = (int) (cumulative / total * pages);
+            cumulative += weights[i];
+        }
+        starts[hosts] = pages;
+        return starts;
+    }
+
+    /**
+     * Returns URL of the page with the given index.
+     *
+     * @param page index of the page.
+     * @return page URL.
+     */
+    public String url(final int page) {
+        return "http://host" + host(page) + ".test" + PAGE + page;
+    }
+
+    /**
+     * Returns host index of the page.
+     *
+     * @param page index of the page.
+     * @return index of the host.
+     */
+    public int host(final int page) {
+        final int index = Arrays.binarySearch(hostStarts, page);
+        // Empty hosts share the start with the next one, so take the last host starting at this page
+        if (index >= 0) {
+            int host = index;
+            while (host + 1 < hostStarts.length - 1 && hostStarts[host + 1] == page) {
+                host++;
+            }
+            return host;
+        }
+        return -index - 2;
+    }
+
+    @Override
+    public Document download(final String url) throws IOException {
+        final int page = parse(url);
+        sleep(page);
+        final SplittableRandom random = random(page);
+        if (random.nextDouble() < downloadErrorRate) {
+            throw new IOException("Injected download error at " + url);
+        }
+        final boolean extractError = random.nextDouble() < extractErrorRate;
+        final long linksSeed = random.nextLong();
+        return () -> {
+            if (extractError) {
+                throw new IOException("Injected extraction error at " + url);
+            }
+            return links(page, new SplittableRandom(linksSeed));
+        };
+    }
+
+    private int parse(final String url) throws IOException {
+        final int index = url.lastIndexOf(PAGE);
+        if (index < 0) {
+            throw new IOException("Unknown page " + url);
+        }
+        final int page;
+        try {
+            page = Integer.parseInt(url, index + PAGE.length(), url.length(), 10);
+        } catch (final NumberFormatException e) {
+            throw new IOException("Unknown page " + url, e);
+        }
+        if (page < 0 || page >= pages || !url.equals(url(page))) {
+            throw new IOException("Unknown page " + url);
+        }
+        return page;
+    }
+
+    private SplittableRandom random(final int page) {
+        return new SplittableRandom(seed ^ (page + 1) * 0x9E3779B97F4A7C15L);
+    }
+
+    private SplittableRandom latencyRandom(final int page) {
+        return new SplittableRandom(~seed ^ (page + 1) * 0xC2B2AE3D27D4EB4FL);
+    }
+
+    private List<String> links(final int page, final SplittableRandom random) {
+        final int loopStart = pages - loopPages;
+        if (page >= loopStart) {
+            final int offset = page - loopStart;
+            final int groupStart = offset - offset % loopLength;
+            final int groupSize = Math.min(loopLength, loopPages - groupStart);
+            return List.of(url(loopStart + groupStart + (offset - groupStart + 1) % groupSize));
+        }
+        final int degree = outDegree(random);
+        final int host = host(page);
+        final List<String> links = new ArrayList<>(degree);
+        for (int i = 0; i < degree; i++) {
+            if (random.nextDouble() < sameHostLinkRate) {
+                links.add(url(random.nextInt(hostStarts[host], hostStarts[host + 1])));
+            } else {
+                links.add(url(random.nextInt(pages)));
+            }
+        }
+        return links;
+    }
+
+    /**
+     * Samples truncated continuous Pareto distribution by inverse transform.
+     */
+    private int outDegree(final SplittableRandom random) {
+        final double min = minOutDegree;
+        final double max = maxOutDegree + 1;
+        final double shape = outDegreeExponent - 1;
+        final double tail = Math.pow(min / max, shape);
+        final double degree = min * Math.pow(1 - random.nextDouble() * (1 - tail), -1 / shape);
+        return Math.min(maxOutDegree, (int) degree);
+    }
+
+    /**
+     * Sleeps for the latency of the page, drawn from its own stream, so the graph does not depend on the latency.
+     */
+    private void sleep(final int page) {
+        final long nanos = switch (latency) {
+            case NONE -> 0;
+            case FIXED -> meanLatencyNanos;
+            case UNIFORM -> (long) (latencyRandom(page).nextDouble() * 2 * meanLatencyNanos);
+            case EXPONENTIAL -> (long) (-Math.log(1 - latencyRandom(page).nextDouble()) * meanLatencyNanos);
+        };
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+
+    /**
+     * Builder of {@link SyntheticDownloader}.
+     */
+    public static final class Builder {
+        private int pages = 10_000;
+        private long seed;
+        private int minOutDegree = 1;
+        private int maxOutDegree = 64;
+        private double outDegreeExponent = 2;
+        private int hosts = 100;
+        private double hostSkew = 1;
+        private double sameHostLinkRate = 0.5;
+        private Latency latency = Latency.NONE;
+        private long meanLatencyMicros;
+        private double downloadErrorRate;
+        private double extractErrorRate;
+        private int loopPages;
+        private int loopLength = 1;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets number of pages in the graph.
+         *
+         * @param pages number of pages.
+         * @return this builder.
+         */
+        public Builder pages(final int pages) {
+            this.pages = pages;
+            return this;
+        }
+
+        /**
+         * Sets seed of the graph. Downloaders with the same configuration and seed serve the same graph.
+         *
+         * @param seed seed of the graph.
+         * @return this builder.
+         */
+        public Builder seed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Sets out-degree distribution: {@code P(degree >= d)} decays as {@code d^(1 - exponent)}.
+         *
+         * @param min      min number of links on a page, positive.
+         * @param max      max number of links on a page.
+         * @param exponent power-law exponent, greater than one.
+         * @return this builder.
+         */
+        public Builder outDegree(final int min, final int max, final double exponent) {
+            this.minOutDegree = min;
+            this.maxOutDegree = max;
+            this.outDegreeExponent = exponent;
+            return this;
+        }
+
+        /**
+         * Sets host distribution: size of {@code i}-th host is proportional to {@code 1 / (i + 1)^skew}.
+         *
+         * @param hosts number of hosts.
+         * @param skew  Zipf exponent, zero for hosts of equal size.
+         * @return this builder.
+         */
+        public Builder hosts(final int hosts, final double skew) {
+            this.hosts = hosts;
+            this.hostSkew = skew;
+            return this;
+        }
+
+        /**
+         * Sets fraction of links pointing to the same host.
+         *
+         * @param rate fraction of same-host links.
+         * @return this builder.
+         */
+        public Builder sameHostLinks(final double rate) {
+            this.sameHostLinkRate = rate;
+            return this;
+        }
+
+        /**
+         * Sets latency of downloads.
+         *
+         * @param latency     latency distribution.
+         * @param meanMicros  mean latency in microseconds.
+         * @return this builder.
+         */
+        public Builder latency(final Latency latency, final long meanMicros) {
+            this.latency = latency;
+            this.meanLatencyMicros = meanMicros;
+            return this;
+        }
+
+        /**
+         * Sets fractions of pages failing with {@link IOException}.
+         *
+         * @param downloadRate fraction of pages failing to download.
+         * @param extractRate  fraction of downloaded pages failing to extract links.
+         * @return this builder.
+         */
+        public Builder errors(final double downloadRate, final double extractRate) {
+            this.downloadErrorRate = downloadRate;
+            this.extractErrorRate = extractRate;
+            return this;
+        }
+
+        /**
+         * Turns the last pages of the graph into loops, where every page has a single link to the next one,
+         * like chains of redirects pointing back to their start.
+         *
+         * @param pages  number of pages in loops.
+         * @param length length of every loop.
+         * @return this builder.
+         */
+        public Builder redirectLoops(final int pages, final int length) {
+            this.loopPages = pages;
+            this.loopLength = length;
+            return this;
+        }
+
+        /**
+         * Creates downloader.
+         *
+         * @return new downloader.
+         * @throws IllegalArgumentException if configuration is invalid.
+         */
+        public SyntheticDownloader build() {
+            if (pages <= 0 || hosts <= 0 || hosts > pages || minOutDegree <= 0 || maxOutDegree < minOutDegree
+                    || outDegreeExponent <= 1 || loopPages < 0 || loopPages > pages || loopLength <= 0) {
+                throw new IllegalArgumentException("Invalid graph configuration");
+            }
+            return new SyntheticDownloader(this);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package crawler.bench;
+
+import crawler.BloomVisitedSet;
+import crawler.FingerprintVisitedSet;
+import crawler.HashVisitedSet;
+import crawler.VisitedSet;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Marking URLs of a {@link SyntheticDownloader} graph visited by {@link VisitedSet} implementations.
+ * {@link #fill()} adds every URL to a new set, {@link #revisit(Blackhole)} adds URLs already visited,
+ * as most links found by a crawl are. {@link #footprint(Footprint)} reports heap and direct memory
+ * retained by a filled set per URL. URLs are created in advance, so strings retained by the set are not counted.
+ * Allocation is reported by the GC profiler:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar VisitedSetBenchmark -prof gc
+ * </pre>
+ *
+ * @author Bogdan Nikitin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VisitedSetBenchmark {
+    private static final int BATCH = 1024;
+
+    public enum Implementation {
+        HASH {
+            @Override
+            VisitedSet create(final int urls) {
+                return new HashVisitedSet();
+            }
+        },
+        FINGERPRINT {
+            @Override
+            VisitedSet create(final int urls) {
+                return new FingerprintVisitedSet(urls, false);
+            }
+        },
+        FINGERPRINT_OFF_HEAP {
+            @Override
+            VisitedSet create(final int urls) {
+                return new FingerprintVisitedSet(urls, true);
+            }
+        },
+        BLOOM {
+            @Override
+            VisitedSet create(final int urls) {
+                return new BloomVisitedSet(urls, 1e-6);
+            }
+        };
+
+        abstract VisitedSet create(int urls);
+    }
+
+    /**
+     * Memory retained by a filled set, in bytes per URL.
+     * Event counters are summed over measurement iterations, so footprint is measured by a single one.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double heapBytesPerUrl;
+        public double directBytesPerUrl;
+        private VisitedSet set;
+    }
+
+    @Param({"HASH", "FINGERPRINT", "FINGERPRINT_OFF_HEAP", "BLOOM"})
+    private Implementation implementation;
+    @Param({"100000", "1000000"})
+    private int urls;
+
+    private String[] pages;
+    private VisitedSet visited;
+    private int next;
+
+    @Setup
+    public void setup() {
+        final SyntheticDownloader downloader = SyntheticDownloader.builder()
+                .pages(urls)
+                .seed(42)
+                .hosts(100, 1)
+                .build();
+        pages = new String[urls];
+        for (int i = 0; i < urls; i++) {
+            pages[i] = downloader.url(i);
+        }
+        visited = fill();
+    }
+
+    @Benchmark
+    public VisitedSet fill() {
+        final VisitedSet set = implementation.create(urls);
+        for (final String page : pages) {
+            set.add(page, 1);
+        }
+        return set;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void revisit(final Blackhole blackhole) {
+        int page = next;
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(visited.add(pages[page], 1));
+            page = page + 1 == urls ? 0 : page + 1;
+        }
+        next = page;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Measurement(iterations = 1)
+    public void footprint(final Footprint footprint) throws InterruptedException {
+        // Memory is measured with and without the set, so nothing else allocated meanwhile is counted
+        footprint.set = fill();
+        collect();
+        final long heap = usedHeap();
+        final long direct = usedDirect();
+        footprint.set = null;
+        collect();
+        footprint.heapBytesPerUrl = (heap - usedHeap()) / (double) urls;
+        footprint.directBytesPerUrl = (direct - usedDirect()) / (double) urls;
+    }
+
+    /**
+     * Collects garbage and lets cleaners free direct memory of collected buffers.
+     */
+    private static void collect() throws InterruptedException {
+        System.gc();
+        System.gc();
+        Thread.sleep(100);
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+}
@@ -0,0 +1,75 @@
+package crawler.bench;
+
+import crawler.CrawlMode;
+import crawler.Result;
+import crawler.WebCrawler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole crawl of a {@link SyntheticDownloader} graph.
+ *
+ * @author Bogdan Nikitin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebCrawlerBenchmark {
+    @Param("10000")
+    private int pages;
+    @Param({"1", "100"})
+    private int hosts;
+    @Param("1")
+    private double hostSkew;
+    @Param({"1", "8"})
+    private int minOutDegree;
+    @Param("64")
+    private int maxOutDegree;
+    @Param("2")
+    private double outDegreeExponent;
+    @Param({"NONE", "EXPONENTIAL"})
+    private SyntheticDownloader.Latency latency;
+    @Param("200")
+    private long meanLatencyMicros;
+    @Param("4")
+    private int depth;
+    @Param({"LEVEL", "PIPELINED"})
+    private CrawlMode mode;
+    @Param("false")
+    private boolean virtualThreads;
+
+    private SyntheticDownloader downloader;
+    private WebCrawler crawler;
+
+    @Setup
+    public void setup() {
+        downloader = SyntheticDownloader.builder()
+                .pages(pages)
+                .seed(42)
+                .hosts(hosts, hostSkew)
+                .outDegree(minOutDegree, maxOutDegree, outDegreeExponent)
+                .latency(latency, meanLatencyMicros)
+                .build();
+        crawler = WebCrawler.builder(downloader)
+                .downloaders(16)
+                .extractors(4)
+                .perHost(4)
+                .mode(mode)
+                .virtualThreads(virtualThreads)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        crawler.close();
+    }
+
+    @Benchmark
+    public Result crawl() {
+        return crawler.download(downloader.url(0), depth);
+    }
+}
@@ -0,0 +1,90 @@
+package crawler;
+
+/**
+ * Limit of concurrently running tasks with the same tag adapting to the health of the tag, such as a host.
+ * Limit starts at the minimum and grows by one per limit of healthy tasks, so large hosts get more concurrency,
+ * and is multiplied by the backoff on a failed or slow task, at most once per round of tasks,
+ * so fragile hosts are not hammered, as additive-increase/multiplicative-decrease congestion control does.
+ * Task is slow when the smoothed duration of tasks exceeds the tolerance times the fastest recent one.
+ * This class is immutable and thread-safe.
+ *
+ * @author Bogdan Nikitin
+ */
+public final class AdaptiveLimit {
+    private static final double DEFAULT_LATENCY_TOLERANCE = 2;
+    private static final double DEFAULT_BACKOFF = 0.5;
+
+    private final int min;
+    private final int max;
+    private final double latencyTolerance;
+    private final double backoff;
+
+    private AdaptiveLimit(final int min, final int max, final double latencyTolerance, final double backoff) {
+        if (min <= 0 || max < min) {
+            throw new IllegalArgumentException("Invalid limit bounds: [" + min + ", " + max + "]");
+        }
+        if (!(latencyTolerance >= 1)) {
+            throw new IllegalArgumentException("Latency tolerance must be at least 1: " + latencyTolerance);
+        }
+        if (!(backoff > 0 && backoff < 1)) {
+            throw new IllegalArgumentException("Backoff must be in (0, 1): " + backoff);
+        }
+        this.min = min;
+        this.max = max;
+        this.latencyTolerance = latencyTolerance;
+        this.backoff = backoff;
+    }
+
+    /**
+     * Creates limit adapting between the given bounds, halving on failures and latency twice the fastest one.
+     *
+     * @param min min number of concurrently running tasks, positive.
+     * @param max max number of concurrently running tasks, not less than {@code min}.
+     * @return new limit.
+     */
+    public static AdaptiveLimit between(final int min, final int max) {
+        return new AdaptiveLimit(min, max, DEFAULT_LATENCY_TOLERANCE, DEFAULT_BACKOFF);
+    }
+
+    /**
+     * Returns limit backing off when the smoothed duration of tasks exceeds the given multiple of the fastest one.
+     *
+     * @param latencyTolerance tolerated slowdown of tasks, at least {@code 1}.
+     * @return new limit.
+     */
+    public AdaptiveLimit latencyTolerance(final double latencyTolerance) {
+        return new AdaptiveLimit(min, max, latencyTolerance, backoff);
+    }
+
+    /**
+     * Returns limit multiplied by the given factor on backoff.
+     *
+     * @param backoff factor of decrease, in {@code (0, 1)}.
+     * @return new limit.
+     */
+    public AdaptiveLimit backoff(final double backoff) {
+        return new AdaptiveLimit(min, max, latencyTolerance, backoff);
+    }
+
+    int min() {
+        return min;
+    }
+
+    int max() {
+        return max;
+    }
+
+    double latencyTolerance() {
+        return latencyTolerance;
+    }
+
+    double backoff() {
+        return backoff;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveLimit[min=" + min + ", max=" + max
+                + ", latencyTolerance=" + latencyTolerance + ", backoff=" + backoff + "]";
+    }
+}
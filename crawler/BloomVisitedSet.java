@@ -0,0 +1,70 @@
+package crawler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Probabilistic {@link VisitedSet} backed by a Bloom filter.
+ * Takes about {@code -1.44 * log2(falsePositiveRate)} bits per URL, i.e. less than two bytes for 0.1%.
+ *
+ * <p>A new URL is considered visited with probability up to {@code falsePositiveRate},
+ * when filter holds expected number of URLs, so such pages are silently not downloaded.
+ * Filter does not keep remaining depths, so in {@link CrawlMode#PIPELINED} mode pages reached again
+ * through a shorter path are not expanded deeper and some pages at depth may be missed as well.
+ * Crawls that must not miss pages should use {@link FingerprintVisitedSet} instead.
+ *
+ * @author Bogdan Nikitin
+ */
+public class BloomVisitedSet implements VisitedSet {
+    private static final VarHandle BITS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int LOCKS = 256;
+
+    private final long[] bits;
+    private final long size;
+    private final int hashes;
+    private final Object[] locks = new Object[LOCKS];
+
+    /**
+     * Creates filter.
+     *
+     * @param expectedUrls      expected number of visited URLs.
+     * @param falsePositiveRate probability of considering new URL visited, in {@code (0, 1)}.
+     */
+    public BloomVisitedSet(final long expectedUrls, final double falsePositiveRate) {
+        if (expectedUrls <= 0 || !(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("Invalid filter parameters");
+        }
+        final double ln2 = Math.log(2);
+        final long optimal = (long) Math.ceil(-expectedUrls * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bits = new long[Math.toIntExact((optimal + Long.SIZE - 1) / Long.SIZE)];
+        this.size = (long) bits.length * Long.SIZE;
+        this.hashes = Math.max(1, (int) Math.round((double) size / expectedUrls * ln2));
+        for (int i = 0; i < LOCKS; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public int add(final String url, final int depth) {
+        final long high = Fingerprints.high(url);
+        final long low = Fingerprints.low(url);
+        final boolean added;
+        // The same URL always takes the same lock, so only one of concurrent callers sees it as new
+        synchronized (locks[(int) (high >>> (Long.SIZE - Integer.numberOfTrailingZeros(LOCKS)))]) {
+            added = set(high, low);
+        }
+        return added ? NOT_VISITED : depth;
+    }
+
+    private boolean set(final long high, final long low) {
+        boolean added = false;
+        for (int i = 0; i < hashes; i++) {
+            final long bit = Math.floorMod(high + i * low, size);
+            final long mask = 1L << bit;
+            if (((long) BITS.getAndBitwiseOr(bits, (int) (bit >>> 6), mask) & mask) == 0) {
+                added = true;
+            }
+        }
+        return added;
+    }
+}
@@ -1,28 +1,328 @@
 package crawler;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Executes submitted tasks with tag with a bound on the number of executing tasks with the same tag.
  * Uses supplied {@link ExecutorService} to execute tasks.
+ * Submission and completion of tasks do not take locks:
+ * tasks below the bound are claimed by a single CAS, tasks above it wait in a lock-free queue.
+ * Thread finishing a task runs the next deferred task with the same tag itself, up to a quantum of tasks in a row,
+ * so tag with many deferred tasks keeps running at its bound instead of waiting behind tasks of every other tag
+ * in the queue of the executor once per task.
+ * Tags may also be given a {@link RateLimit}. Task started too early after the previous task with the same tag
+ * waits in a timer queue without occupying a thread of the executor, so threads run tasks of other tags meanwhile.
+ * With {@link AdaptiveLimit}, the bound of every tag adapts between the limits by durations and failures of its tasks,
+ * reported by {@link #reportFailure()}. Tasks above the adapted bound are parked without occupying a thread as well.
+ * Shutdown is orderly: tasks submitted before it still run, keeping the bound and the rate limits.
  * @param <T> type of tag.
  *
  * @author Bogdan Nikitin
  */
 public class BoundedExecutor<T> implements AutoCloseable {
+    /**
+     * Tasks claimed for a tag. Number of claims is the number of executing tasks plus the number of deferred ones,
+     * so {@code min(claims, bound)} tasks are executing. Entry with no claims is retired and never reused.
+     * Entry of rate limited tag is retired only when its limit is fully restored, so no limit is lost with it.
+     * Adapted bound is kept only while the tag has tasks, new entry starts from the min bound.
+     */
     private static class DeferredEntry {
-        public final Deque<Runnable> tasks = new ArrayDeque<>();
-        public int executing;
+        private static final int RETIRED = -1;
+        /** Weight of a new duration in the smoothed one is {@code 1 / SMOOTHING}. */
+        private static final int SMOOTHING = 8;
+        /** Fastest duration grows towards slower ones by {@code 1 / BASELINE_DECAY} of the difference. */
+        private static final int BASELINE_DECAY = 64;
+
+        public final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        public final AtomicInteger claims = new AtomicInteger();
+        /** Theoretical arrival time of the next task, which is the time the limit is fully restored. */
+        private final AtomicLong arrival = new AtomicLong(System.nanoTime());
+        private final long interval;
+        private final long tolerance;
+        private final AdaptiveLimit adaptive;
+        /** Claimed tasks above the adapted bound. */
+        private final Queue<Runnable> parked = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger running = new AtomicInteger();
+        /** Bits of the adapted bound, fractional to grow by one per bound of tasks. */
+        private final AtomicLong bound;
+        /** Completion time of the task that caused the last backoff. */
+        private final AtomicLong lastBackoff = new AtomicLong(System.nanoTime());
+        /** Racy statistics of durations of successful tasks, nanoseconds. */
+        private volatile long fastest;
+        private volatile long smoothed;
+
+        DeferredEntry(final RateLimit limit, final AdaptiveLimit adaptive) {
+            this.interval = limit == null ? 0 : limit.intervalNanos();
+            this.tolerance = limit == null ? 0 : limit.toleranceNanos();
+            this.adaptive = adaptive;
+            this.bound = new AtomicLong(Double.doubleToRawLongBits(adaptive == null ? 0 : adaptive.min()));
+        }
+
+        /**
+         * Starts a task now if the limit allows, as <a href="https://en.wikipedia.org/wiki/Generic_cell_rate_algorithm">
+         * GCRA</a> does, which is equivalent to the token bucket.
+         * Task is checked when it is about to run rather than when it is submitted,
+         * so time spent in the queue of the executor does not let tasks start closer to each other.
+         * @return {@code 0} if the task may start or nanoseconds to wait before checking again.
+         */
+        long acquire() {
+            if (interval == 0) {
+                return 0;
+            }
+            final long now = System.nanoTime();
+            while (true) {
+                final long current = arrival.get();
+                final long wait = current - tolerance - now;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (arrival.compareAndSet(current, (current - now > 0 ? current : now) + interval)) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * Returns nanoseconds left until the limit is fully restored, not positive if entry is not rate limited.
+         */
+        long cooldown() {
+            return interval == 0 ? 0 : arrival.get() - System.nanoTime();
+        }
+
+        boolean isAdaptive() {
+            return adaptive != null;
+        }
+
+        private int adaptedBound() {
+            return (int) Double.longBitsToDouble(bound.get());
+        }
+
+        /**
+         * Counts a task running if the adapted bound allows.
+         * @return whether the task may run now.
+         */
+        boolean tryStart() {
+            if (adaptive == null) {
+                return true;
+            }
+            while (true) {
+                final int current = running.get();
+                if (current >= adaptedBound()) {
+                    return false;
+                }
+                if (running.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Takes parked task if the adapted bound allows it to run. Task still has to be started by {@link #tryStart()}.
+         * @return parked task or {@code null}.
+         */
+        Runnable unpark() {
+            return !parked.isEmpty() && running.get() < adaptedBound() ? parked.poll() : null;
+        }
+
+        /**
+         * Counts the task finished and adapts the bound to its duration and result.
+         * @param start time the task started.
+         * @param end time the task finished.
+         * @param failed whether the task reported failure.
+         */
+        void finish(final long start, final long end, final boolean failed) {
+            running.decrementAndGet();
+            boolean congested = failed;
+            if (!failed) {
+                final long duration = end - start;
+                final long fastest = this.fastest == 0 || duration < this.fastest
+                        ? duration
+                        : this.fastest + (duration - this.fastest) / BASELINE_DECAY;
+                final long smoothed = this.smoothed == 0 ? duration : this.smoothed + (duration - this.smoothed) / SMOOTHING;
+                this.fastest = fastest;
+                this.smoothed = smoothed;
+                congested = smoothed > adaptive.latencyTolerance() * fastest;
+            }
+            if (!congested) {
+                adapt(false);
+                return;
+            }
+            // Tasks started before the last backoff have seen the old bound, so they do not back off again
+            final long last = lastBackoff.get();
+            if (start - last > 0 && lastBackoff.compareAndSet(last, end)) {
+                adapt(true);
+            }
+        }
+
+        private void adapt(final boolean backoff) {
+            while (true) {
+                final long bits = bound.get();
+                final double current = Double.longBitsToDouble(bits);
+                final double next = backoff
+                        ? Math.max(adaptive.min(), current * adaptive.backoff())
+                        : Math.min(adaptive.max(), current + 1 / current);
+                if (next == current || bound.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                    return;
+                }
+            }
+        }
     }
 
+    /**
+     * Task submitted to the executor. Runs deferred tasks returned by {@link #finishTask} in a loop.
+     * After {@link #QUANTUM} tasks in a row the next deferred task is handed off to the executor,
+     * as deficit round-robin does, so tasks of other tags are not starved.
+     */
+    private class BoundTask implements Runnable {
+        private final Runnable command;
+        private final DeferredEntry info;
+        private final T tag;
+        /** Whether the task reported failure, accessed by the running thread only. */
+        private boolean failed;
+        /** Whether the task reported its duration, accessed by the running thread only. */
+        private boolean timed;
+        private long start;
+        private long end;
+
+        BoundTask(final Runnable command, final DeferredEntry info, final T tag) {
+            this.command = command;
+            this.info = info;
+            this.tag = tag;
+        }
+
+        @Override
+        public void run() {
+            final HandOff handOff = handOffs.get();
+            if (handOff != null && handOff.task == null) {
+                handOff.task = this;
+                return;
+            }
+            Throwable failure = null;
+            // Parked tasks the executor rejected after shutdown, run by this thread
+            Deque<BoundTask> unparked = null;
+            BoundTask current = this;
+            for (int runs = 1; current != null; runs++) {
+                final long wait = current.info.acquire();
+                if (wait > 0) {
+                    if (postpone(current, wait)) {
+                        deferred(current.tag);
+                        break;
+                    }
+                    // Timer is shut down, so the thread waits for the limit itself
+                    LockSupport.parkNanos(wait);
+                    continue;
+                }
+                final BoundTask next;
+                if (!current.info.tryStart()) {
+                    current.info.parked.add(current);
+                    // Task finished concurrently may have missed the parked one
+                    next = unpark(current.info, current.tag);
+                    deferred(current.tag);
+                } else {
+                    try {
+                        if (current.info.isAdaptive()) {
+                            runAdaptive(current);
+                        } else {
+                            current.command.run();
+                        }
+                    } catch (final RuntimeException | Error e) {
+                        // Claim is released even if the task breaks, so the tag is not blocked forever
+                        failure = addFailure(failure, e);
+                    }
+                    if (current.info.isAdaptive()) {
+                        final BoundTask task = unpark(current.info, current.tag);
+                        if (task != null) {
+                            if (unparked == null) {
+                                unparked = new ArrayDeque<>();
+                            }
+                            unparked.add(task);
+                        }
+                    }
+                    next = finishTask(current.info, current.tag, runs < QUANTUM);
+                }
+                current = next != null || unparked == null ? next : unparked.poll();
+            }
+            if (failure instanceof RuntimeException e) {
+                throw e;
+            }
+            if (failure instanceof Error e) {
+                throw e;
+            }
+        }
+
+        private void runAdaptive(final BoundTask task) {
+            final long start = System.nanoTime();
+            runningTasks.set(task);
+            try {
+                task.command.run();
+            } catch (final RuntimeException | Error e) {
+                task.failed = true;
+                throw e;
+            } finally {
+                runningTasks.remove();
+                if (task.timed) {
+                    task.info.finish(task.start, task.end, task.failed);
+                } else {
+                    task.info.finish(start, System.nanoTime(), task.failed);
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps the first failure of tasks run in a row, adding later ones as suppressed.
+     */
+    private static Throwable addFailure(final Throwable failure, final Throwable e) {
+        if (failure == null) {
+            return e;
+        }
+        if (failure != e) {
+            failure.addSuppressed(e);
+        }
+        return failure;
+    }
+
+    /**
+     * Task handed off by the current thread and run by the executor in the same thread.
+     */
+    private class HandOff {
+        private BoundTask task;
+    }
+
+    private static final int MAX_SPINS = 64;
+    /** Max number of tasks with the same tag run by a thread in a row. */
+    private static final int QUANTUM = 256;
+
     private final ConcurrentMap<T, DeferredEntry> deferred;
     private final ExecutorService executor;
     private final int bound;
+    private final ThreadLocal<HandOff> handOffs = new ThreadLocal<>();
+    /** Tasks run by the current thread with adaptive bound. */
+    private final ThreadLocal<BoundTask> runningTasks = new ThreadLocal<>();
+    private final Function<? super T, RateLimit> rateLimits;
+    private final AdaptiveLimit adaptive;
+    private final Consumer<? super T> deferrals;
+    /** Starts rate limited tasks and retires their entries, {@code null} if there are no rate limits. */
+    private final ScheduledThreadPoolExecutor timer;
 
     /**
      * Creates {@code BoundedExecutor}.
@@ -30,9 +330,76 @@ public class BoundedExecutor<T> implements AutoCloseable {
      * @param bound bound on the number of executing tasks with the same tag.
      */
     public BoundedExecutor(final ExecutorService executor, final int bound) {
+        this(executor, bound, null);
+    }
+
+    /**
+     * Creates {@code BoundedExecutor} limiting rate of tasks with the same tag.
+     * Limit of a tag is requested when a task with the tag is submitted after the tag was idle,
+     * so the function should be fast.
+     * @param executor executor used to execute tasks.
+     * @param bound bound on the number of executing tasks with the same tag.
+     * @param rateLimits limit of rate of tasks with the tag, returns {@code null} if tag is not limited.
+     *                   {@code null} if no tag is limited.
+     */
+    public BoundedExecutor(
+            final ExecutorService executor,
+            final int bound,
+            final Function<? super T, RateLimit> rateLimits
+    ) {
+        this(executor, bound, null, rateLimits, null);
+    }
+
+    /**
+     * Creates {@code BoundedExecutor} adapting bound of every tag and limiting rate of tasks with the same tag.
+     * @param executor executor used to execute tasks.
+     * @param adaptive bounds and parameters of adaptation of the bound.
+     * @param rateLimits limit of rate of tasks with the tag, returns {@code null} if tag is not limited.
+     *                   {@code null} if no tag is limited.
+     * @see #BoundedExecutor(ExecutorService, int, Function)
+     */
+    public BoundedExecutor(
+            final ExecutorService executor,
+            final AdaptiveLimit adaptive,
+            final Function<? super T, RateLimit> rateLimits
+    ) {
+        this(executor, adaptive.max(), adaptive, rateLimits, null);
+    }
+
+    /**
+     * Creates {@code BoundedExecutor} notifying about deferred tasks.
+     * Task is deferred when the bound of its tag is reached, it is started too early for the rate limit
+     * or above the adapted bound. Listener is called by the thread deferring the task after the task is queued,
+     * so it should be fast. Exceptions of the listener are passed to the uncaught exception handler of the thread.
+     * @param executor executor used to execute tasks.
+     * @param bound bound on the number of executing tasks with the same tag, ignored if {@code adaptive} is given.
+     * @param adaptive bounds and parameters of adaptation of the bound, {@code null} if the bound is fixed.
+     * @param rateLimits limit of rate of tasks with the tag, returns {@code null} if tag is not limited.
+     *                   {@code null} if no tag is limited.
+     * @param deferrals listener receiving tag of every deferred task, {@code null} if not needed.
+     */
+    public BoundedExecutor(
+            final ExecutorService executor,
+            final int bound,
+            final AdaptiveLimit adaptive,
+            final Function<? super T, RateLimit> rateLimits,
+            final Consumer<? super T> deferrals
+    ) {
         this.executor = executor;
-        this.bound = bound;
+        this.bound = adaptive == null ? bound : adaptive.max();
         this.deferred = new ConcurrentHashMap<>();
+        this.adaptive = adaptive;
+        this.rateLimits = rateLimits;
+        this.deferrals = deferrals;
+        if (rateLimits == null) {
+            this.timer = null;
+        } else {
+            this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread thread = new Thread(runnable, "bounded-executor-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
     }
 
     /**
@@ -41,58 +408,282 @@ public class BoundedExecutor<T> implements AutoCloseable {
      * will be not greater than specified bound.
      * @param command the task to execute.
      * @param tag task tag.
-     * @throws java.util.concurrent.RejectedExecutionException if this task cannot be accepted for execution.
+     * @throws RejectedExecutionException if this task cannot be accepted for execution,
+     *                                    for example, the executor is shut down.
      */
     public void execute(final Runnable command, T tag) {
-        deferred.compute(tag, (ignored, info) -> {
+        if (executor.isShutdown()) {
+            // Deferred task would be accepted, though no new tasks are accepted after shutdown
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+        while (true) {
+            DeferredEntry info = deferred.get(tag);
             if (info == null) {
-                info = new DeferredEntry();
+                info = deferred.computeIfAbsent(
+                        tag,
+                        ignored -> new DeferredEntry(rateLimits == null ? null : rateLimits.apply(tag), adaptive)
+                );
             }
-            if (info.executing == bound) {
-                info.tasks.add(command);
+            final int claims = claim(info);
+            if (claims == DeferredEntry.RETIRED) {
+                deferred.remove(tag, info);
+                continue;
+            }
+            if (claims < bound) {
+                try {
+                    addTask(command, info, tag);
+                } catch (final RuntimeException e) {
+                    final BoundTask next = finishTask(info, tag);
+                    if (next != null) {
+                        next.run();
+                    }
+                    throw e;
+                }
             } else {
-                info.executing++;
-                addTask(command, tag);
+                // Finishing thread waits for the claimed task to be queued, so the listener is called after
+                info.tasks.add(command);
+                deferred(tag);
             }
-            return info;
-        });
+            return;
+        }
     }
 
-    private void addTask(final Runnable task, final T tag) {
-        executor.execute(() -> {
-            task.run();
-            finishTask(tag);
-        });
+    /**
+     * Reports that the task run by the current thread failed because of its tag, for example, host timed out,
+     * so the adapted bound of the tag backs off. Task throwing exception is failed as well.
+     * Does nothing if bounds are not adaptive or the current thread does not run a task of this executor.
+     */
+    public void reportFailure() {
+        final BoundTask task = runningTasks.get();
+        if (task != null) {
+            task.failed = true;
+        }
+    }
+
+    /**
+     * Reports duration of the part of the task run by the current thread that depends on its tag,
+     * for example, download without waiting for a connection, so the adapted bound of the tag follows it
+     * instead of the duration of the whole task. The last reported duration is used.
+     * Does nothing if bounds are not adaptive or the current thread does not run a task of this executor.
+     * @param start {@link System#nanoTime()} the part started.
+     * @param end {@link System#nanoTime()} the part finished.
+     */
+    public void reportDuration(final long start, final long end) {
+        final BoundTask task = runningTasks.get();
+        if (task != null) {
+            task.timed = true;
+            task.start = start;
+            task.end = end;
+        }
+    }
+
+    /**
+     * Adds a claim to the entry.
+     * @return number of claims before this one or {@link DeferredEntry#RETIRED} if entry is retired.
+     */
+    private static int claim(final DeferredEntry info) {
+        while (true) {
+            final int claims = info.claims.get();
+            if (claims == DeferredEntry.RETIRED || info.claims.compareAndSet(claims, claims + 1)) {
+                return claims;
+            }
+        }
+    }
+
+    private void addTask(final Runnable task, final DeferredEntry info, final T tag) {
+        executor.execute(new BoundTask(task, info, tag));
+    }
+
+    /**
+     * Passes task started too early to the timer, which resubmits it to the executor when the limit allows,
+     * so the thread is free to run tasks of other tags meanwhile. Claim of the task is kept.
+     * Task rejected by the executor after shutdown is run by the timer thread.
+     * @return {@code false} if the timer is shut down and the task is not postponed.
+     */
+    private boolean postpone(final BoundTask task, final long wait) {
+        try {
+            timer.schedule(() -> {
+                try {
+                    executor.execute(task);
+                } catch (final RejectedExecutionException ignored) {
+                    task.run();
+                }
+            }, wait, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (final RejectedExecutionException ignored) {
+            return false;
+        }
     }
 
-    private void finishTask(final T tag) {
-        deferred.computeIfPresent(tag, (ignored, info) -> {
-           if (info.tasks.isEmpty()) {
-               if (--info.executing == 0) {
-                   return null;
-               }
-           } else {
-               addTask(info.tasks.remove(), tag);
-           }
-           return info;
+    /**
+     * Returns tags with the greatest numbers of running and waiting tasks.
+     * Counts are read without stopping execution, so they may be slightly outdated.
+     * @param limit max number of returned tags.
+     * @return numbers of tasks by tag, from the greatest.
+     */
+    public Map<T, Integer> busiest(final int limit) {
+        final PriorityQueue<Map.Entry<T, Integer>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+        deferred.forEach((tag, info) -> {
+            final int claims = info.claims.get();
+            if (claims > 0 && limit > 0) {
+                top.add(Map.entry(tag, claims));
+                if (top.size() > limit) {
+                    top.remove();
+                }
+            }
         });
+        final List<Map.Entry<T, Integer>> sorted = new ArrayList<>(top);
+        sorted.sort(Map.Entry.<T, Integer>comparingByValue().reversed());
+        final Map<T, Integer> busiest = new LinkedHashMap<>();
+        sorted.forEach(entry -> busiest.put(entry.getKey(), entry.getValue()));
+        return busiest;
+    }
+
+    /**
+     * Notifies the listener about deferred task, which is already queued.
+     * Failure of the listener is passed to the uncaught exception handler of the thread,
+     * so it cannot lose the task or its claim.
+     */
+    private void deferred(final T tag) {
+        if (deferrals != null) {
+            try {
+                deferrals.accept(tag);
+            } catch (final RuntimeException e) {
+                final Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+
+    /**
+     * Passes parked task of the entry to the executor if the adapted bound allows it to run.
+     * Task run by the executor in the calling thread or rejected by the executor after shutdown
+     * is returned to the caller, as {@link #finishTask} does.
+     * @return parked task to be run by the calling thread or {@code null}.
+     */
+    private BoundTask unpark(final DeferredEntry info, final T tag) {
+        final Runnable task = info.unpark();
+        if (task == null) {
+            return null;
+        }
+        final HandOff handOff = new HandOff();
+        handOffs.set(handOff);
+        try {
+            try {
+                executor.execute(task);
+            } catch (final RejectedExecutionException ignored) {
+                // Parked task is a bound task, so it is handed off without running
+                task.run();
+            }
+            return handOff.task;
+        } finally {
+            handOffs.remove();
+        }
+    }
+
+    /**
+     * Retires entry without claims. Entry of rate limited tag is retired when the limit is fully restored.
+     */
+    private void retire(final DeferredEntry info, final T tag) {
+        final long cooldown = info.cooldown();
+        if (cooldown > 0) {
+            try {
+                timer.schedule(() -> retire(info, tag), cooldown, TimeUnit.NANOSECONDS);
+                return;
+            } catch (final RejectedExecutionException ignored) {
+                // Timer is shut down, so no task is started anymore
+            }
+        }
+        if (info.claims.compareAndSet(0, DeferredEntry.RETIRED)) {
+            deferred.remove(tag, info);
+        }
+    }
+
+    /**
+     * Finishes task of the entry and hands off the next deferred task, if any, to the executor.
+     * @return deferred task to be run by the calling thread or {@code null}.
+     */
+    private BoundTask finishTask(final DeferredEntry info, final T tag) {
+        return finishTask(info, tag, false);
+    }
+
+    /**
+     * Finishes task of the entry and returns the next deferred task, if any, to the calling thread
+     * or hands it off to the executor.
+     * Hand-off happens outside of any lock. If the executor runs handed off task in the calling thread,
+     * as {@link java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy} does,
+     * task is returned to the caller instead of being run recursively.
+     * Deferred task rejected by the executor after shutdown is returned to the caller as well,
+     * so tasks submitted before shutdown still run.
+     * @param direct whether to return the next task directly.
+     * @return deferred task to be run by the calling thread or {@code null}.
+     */
+    private BoundTask finishTask(final DeferredEntry info, final T tag, final boolean direct) {
+        final int claims = info.claims.decrementAndGet();
+        if (claims < bound) {
+            if (claims == 0) {
+                retire(info, tag);
+            }
+            return null;
+        }
+        final BoundTask next = new BoundTask(takeDeferred(info), info, tag);
+        if (direct) {
+            return next;
+        }
+        final HandOff handOff = new HandOff();
+        handOffs.set(handOff);
+        try {
+            executor.execute(next);
+            return handOff.task;
+        } catch (final RejectedExecutionException ignored) {
+            return next;
+        } finally {
+            handOffs.remove();
+        }
+    }
+
+    /**
+     * Takes deferred task of the entry.
+     * Task is claimed before being queued, so it may not be visible yet for a short time.
+     */
+    private static Runnable takeDeferred(final DeferredEntry info) {
+        for (int spins = 0; ; spins++) {
+            final Runnable task = info.tasks.poll();
+            if (task != null) {
+                return task;
+            }
+            if (spins < MAX_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                // Submitting thread may be descheduled between the claim and the enqueue
+                Thread.yield();
+            }
+        }
     }
 
     /**
      * Initiates an orderly shutdown in which previously submitted tasks are
      * executed, but no new tasks will be accepted.
-     * Shutdown performed by {@link ExecutorService#close()}.
+     * Shutdown performed by {@link ExecutorService#close()}, which waits for postponed tasks as well.
      * @throws SecurityException if {@link ExecutorService#close()} throws.
      */
     @Override
     public void close() {
+        if (timer != null) {
+            timer.shutdown();
+        }
         executor.close();
+        if (timer != null) {
+            // Postponed tasks are run by the timer thread once the executor is terminated
+            timer.close();
+        }
     }
 
     /**
      * Blocks until all tasks have completed execution after a shutdown
      * request, or the timeout occurs, or the current thread is
      * interrupted, whichever happens first.
+     * Tasks postponed by rate limits are waited for as well.
      *
      * @param timeout the maximum time to wait
      * @param unit the time unit of the timeout argument
@@ -102,7 +693,9 @@ public class BoundedExecutor<T> implements AutoCloseable {
      */
     boolean awaitTermination(long timeout, TimeUnit unit)
             throws InterruptedException {
-        return executor.awaitTermination(timeout, unit);
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return executor.awaitTermination(timeout, unit)
+                && (timer == null || timer.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
     }
 
     /**
@@ -125,6 +718,9 @@ public class BoundedExecutor<T> implements AutoCloseable {
      *         denies access.
      */
     void shutdown() {
+        if (timer != null) {
+            timer.shutdown();
+        }
         executor.shutdown();
     }
 }
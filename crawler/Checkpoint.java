@@ -0,0 +1,389 @@
+package crawler;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only on-disk log of a crawl, allowing to resume the crawl after the JVM dies.
+ * Log records every URL entering the frontier with its remaining depth, and every URL whose processing is finished.
+ * Crawl started with a non-empty checkpoint restores visited URLs from the log
+ * and downloads only URLs entered the frontier but not finished, instead of starting from scratch.
+ * Pages processed before the crash but not yet synced to disk are processed again,
+ * so they may be reported twice across runs.
+ *
+ * <p>Crawling threads encode records and put them to a lock-free queue, so they neither contend nor wait for the disk.
+ * Records are written to the disk by a background thread, which forces the file to the storage
+ * at most once per sync interval and on {@link #close()}, so a crash loses at most the records of the last interval.
+ * Records are logged in the order they are put to the queue, so URL finished by one thread
+ * is logged after it entered the frontier in another one.
+ * Every record is checksummed, and the log is truncated at the first damaged record when opened.
+ * Write failure stops checkpointing, crawl goes on and the failure is thrown by {@link #close()}.
+ *
+ * <p>Checkpoint is used by a single crawl, file is locked while checkpoint is open.
+ * Crawl is resumed with a checkpoint opened again.
+ *
+ * @author Bogdan Nikitin
+ */
+public final class Checkpoint implements AutoCloseable {
+    private static final byte START = 1;
+    private static final byte FRONTIER = 2;
+    private static final byte DONE = 3;
+    /** Length and checksum. */
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    /** Type, depth and first download flag. */
+    private static final int FIXED_BODY_SIZE = 1 + Integer.BYTES + 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Duration DEFAULT_SYNC_INTERVAL = Duration.ofSeconds(1);
+    /** Max interval between draining of the queue, bounding memory of queued records. */
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * URL that entered the frontier and was not finished.
+     *
+     * @param url   URL to download.
+     * @param depth remaining depth of the URL.
+     * @param first whether URL was not downloaded before, so its page is to be reported.
+     */
+    record Entry(String url, int depth, boolean first) {
+    }
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final long syncIntervalNanos;
+    /** Encoded records not written yet. */
+    private final Queue<byte[]> records = new ConcurrentLinkedQueue<>();
+    /** Buffer of the writer thread. */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final String startUrl;
+    private final int startDepth;
+    private Thread writer;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    private Checkpoint(final Path file, final Duration syncInterval) throws IOException {
+        this.syncIntervalNanos = syncInterval.toNanos();
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.lock = channel.tryLock();
+        } catch (final OverlappingFileLockException e) {
+            channel.close();
+            throw new IOException("Checkpoint is already open: " + file, e);
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Checkpoint is used by another process: " + file);
+        }
+        try {
+            final Replay replay = replay(null);
+            channel.truncate(replay.valid);
+            this.startUrl = replay.startUrl;
+            this.startDepth = replay.startDepth;
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens checkpoint syncing to the storage once per second, creating the file if it does not exist.
+     *
+     * @param file checkpoint file.
+     * @return opened checkpoint.
+     * @throws IOException if the file cannot be opened or is locked.
+     */
+    public static Checkpoint open(final Path file) throws IOException {
+        return open(file, DEFAULT_SYNC_INTERVAL);
+    }
+
+    /**
+     * Opens checkpoint, creating the file if it does not exist.
+     *
+     * @param file         checkpoint file.
+     * @param syncInterval min interval between forcing the file to the storage.
+     * @return opened checkpoint.
+     * @throws IOException if the file cannot be opened or is locked.
+     */
+    public static Checkpoint open(final Path file, final Duration syncInterval) throws IOException {
+        return new Checkpoint(file, Objects.requireNonNull(syncInterval));
+    }
+
+    /**
+     * Returns {@code true} if the checkpoint contains a logged crawl, possibly finished.
+     * Crawl started with such checkpoint is resumed from it.
+     *
+     * @return whether the checkpoint is not empty.
+     */
+    public boolean isResumable() {
+        return startUrl != null;
+    }
+
+    /**
+     * Starts logging of the crawl or returns URLs to resume it from.
+     * Visited URLs of the logged crawl are added to the given set.
+     *
+     * @return unfinished URLs in the order they entered the frontier, or {@code null} if the crawl is new.
+     * @throws IllegalArgumentException if the checkpoint belongs to another crawl.
+     * @throws IllegalStateException if a crawl was already started with this checkpoint.
+     * @throws UncheckedIOException if the log cannot be read.
+     */
+    synchronized List<Entry> start(final String url, final int depth, final VisitedSet visited) {
+        if (writer != null) {
+            // The second start record would be taken for damage and truncate the log when replayed
+            throw new IllegalStateException("Crawl is already started with this checkpoint, open it again to resume");
+        }
+        final List<Entry> unfinished;
+        if (startUrl == null) {
+            append(START, url, depth, true);
+            unfinished = null;
+        } else {
+            if (!startUrl.equals(url) || startDepth != depth) {
+                throw new IllegalArgumentException("Checkpoint belongs to crawl of " + startUrl + " with depth " + startDepth);
+            }
+            try {
+                unfinished = replay(visited).unfinished();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        writer = new Thread(this::writeRecords, "checkpoint-writer");
+        writer.setDaemon(true);
+        writer.start();
+        return unfinished;
+    }
+
+    /**
+     * Logs URL entering the frontier. Can be called concurrently.
+     */
+    void frontier(final String url, final int depth, final boolean first) {
+        append(FRONTIER, url, depth, first);
+    }
+
+    /**
+     * Logs URL whose processing is finished: page is reported and its links entered the frontier.
+     * Can be called concurrently.
+     */
+    void done(final String url, final int depth) {
+        append(DONE, url, depth, false);
+    }
+
+    private void append(final byte type, final String url, final int depth, final boolean first) {
+        if (failure == null && !closed) {
+            records.offer(encode(type, url, depth, first));
+        }
+    }
+
+    private static byte[] encode(final byte type, final String url, final int depth, final boolean first) {
+        final byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        final int size = FIXED_BODY_SIZE + bytes.length;
+        final ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + size);
+        record.putInt(size).putInt(0).put(type).putInt(depth).put((byte) (first ? 1 : 0)).put(bytes);
+        final CRC32C checksum = new CRC32C();
+        checksum.update(record.array(), HEADER_SIZE, size);
+        return record.putInt(Integer.BYTES, (int) checksum.getValue()).array();
+    }
+
+    /**
+     * Body of the writer thread: drains the queue until the checkpoint is closed, forcing written records
+     * to the storage once per sync interval.
+     */
+    private void writeRecords() {
+        long lastSync = System.nanoTime();
+        boolean dirty = false;
+        try {
+            while (!closed) {
+                dirty |= drain();
+                if (dirty && System.nanoTime() - lastSync >= syncIntervalNanos) {
+                    sync();
+                    lastSync = System.nanoTime();
+                    dirty = false;
+                }
+                final long untilSync = lastSync + syncIntervalNanos - System.nanoTime();
+                LockSupport.parkNanos(this, dirty ? Math.min(untilSync, DRAIN_INTERVAL_NANOS) : DRAIN_INTERVAL_NANOS);
+            }
+        } catch (final IOException e) {
+            failure = e;
+            records.clear();
+        }
+    }
+
+    /**
+     * Moves queued records to the buffer, writing the buffer when it is full.
+     *
+     * @return whether any record was drained.
+     */
+    private boolean drain() throws IOException {
+        boolean drained = false;
+        for (byte[] record = records.poll(); record != null; record = records.poll()) {
+            if (buffer.remaining() < record.length) {
+                flush();
+            }
+            if (record.length > buffer.capacity()) {
+                write(ByteBuffer.wrap(record));
+            } else {
+                buffer.put(record);
+            }
+            drained = true;
+        }
+        return drained;
+    }
+
+    private void flush() throws IOException {
+        write(buffer.flip());
+        buffer.clear();
+    }
+
+    private void write(final ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    private void sync() throws IOException {
+        flush();
+        channel.force(false);
+    }
+
+    /**
+     * Waits for the writer thread, writes the remaining records, forces them to the storage and closes the file.
+     * Records logged after the call are ignored.
+     *
+     * @throws IOException if writing of records failed during crawl or now.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            joinUninterruptibly(writer);
+        }
+        try {
+            if (failure == null) {
+                drain();
+                sync();
+            }
+        } catch (final IOException e) {
+            failure = e;
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void joinUninterruptibly(final Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads the log from the start and positions the file at the end of its valid part.
+     *
+     * @param visited set to add visited URLs to or {@code null}.
+     */
+    private Replay replay(final VisitedSet visited) throws IOException {
+        final Replay replay = new Replay(visited);
+        // Stream is not closed, as it would close the channel
+        replay.read(Channels.newInputStream(channel.position(0)));
+        channel.position(replay.valid);
+        return replay;
+    }
+
+    /**
+     * Reads the log, collecting visited and unfinished URLs.
+     */
+    private final class Replay {
+        private final VisitedSet visited;
+        private final Map<Entry, Entry> pending = new LinkedHashMap<>();
+        private String startUrl;
+        private int startDepth;
+        private long valid;
+
+        Replay(final VisitedSet visited) {
+            this.visited = visited;
+        }
+
+        /**
+         * Reads records until the end of the log or the first damaged record.
+         */
+        void read(final InputStream stream) throws IOException {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+            final CRC32C crc = new CRC32C();
+            while (true) {
+                final byte[] body;
+                try {
+                    final int size = in.readInt();
+                    final int expected = in.readInt();
+                    if (size < FIXED_BODY_SIZE || size > channel.size()) {
+                        return;
+                    }
+                    body = new byte[size];
+                    in.readFully(body);
+                    crc.reset();
+                    crc.update(body);
+                    if ((int) crc.getValue() != expected) {
+                        return;
+                    }
+                } catch (final EOFException e) {
+                    return;
+                }
+                final ByteBuffer record = ByteBuffer.wrap(body);
+                final byte type = record.get();
+                final int depth = record.getInt();
+                final boolean first = record.get() != 0;
+                final String url = new String(body, FIXED_BODY_SIZE, body.length - FIXED_BODY_SIZE, StandardCharsets.UTF_8);
+                if (type == START && startUrl == null) {
+                    startUrl = url;
+                    startDepth = depth;
+                } else if (type == FRONTIER) {
+                    if (visited != null) {
+                        visited.add(url, depth);
+                        pending.put(new Entry(url, depth, false), new Entry(url, depth, first));
+                    }
+                } else if (type == DONE) {
+                    pending.remove(new Entry(url, depth, false));
+                } else {
+                    return;
+                }
+                valid += HEADER_SIZE + body.length;
+            }
+        }
+
+        List<Entry> unfinished() {
+            return new ArrayList<>(pending.values());
+        }
+    }
+}
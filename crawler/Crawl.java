@@ -0,0 +1,86 @@
+package crawler;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Handle of a crawl started by {@link WebCrawler#crawl(String, int, java.util.Set)},
+ * allowing to watch progress of the crawl and to stop it.
+ * This class is thread-safe.
+ *
+ * @param <T> type of the crawl result.
+ * @author Bogdan Nikitin
+ */
+public final class Crawl<T> {
+    /**
+     * Snapshot of crawl progress. Every value is read without stopping the crawl,
+     * so values are exact at slightly different moments of the call.
+     *
+     * @param depth              remaining depth of the deepest URL being downloaded,
+     *                           the last level has depth {@code 1}, {@code 0} if nothing is downloaded yet.
+     * @param downloaded         number of reported downloaded pages.
+     * @param errors             number of reported errors.
+     * @param frontier           number of URLs accepted for download whose download has not started,
+     *                           zero once the crawl is completed, cancelled or over budget, as they never start.
+     * @param busiestHosts       hosts with the most running and waiting downloads of the crawler, from the busiest.
+     * @param elapsed            time since the crawl started.
+     * @param estimatedRemaining time to download the current frontier at the mean rate of the crawl,
+     *                           {@code null} if nothing is finished yet. Grows while the frontier grows.
+     */
+    public record Progress(
+            int depth,
+            long downloaded,
+            long errors,
+            long frontier,
+            Map<String, Integer> busiestHosts,
+            Duration elapsed,
+            Duration estimatedRemaining
+    ) {
+    }
+
+    private final CompletableFuture<T> future;
+    private final Supplier<Progress> progress;
+
+    Crawl(final CompletableFuture<T> future, final Supplier<Progress> progress) {
+        this.future = future;
+        this.progress = progress;
+    }
+
+    /**
+     * Returns future completed when crawling is finished.
+     *
+     * @return future of the result.
+     */
+    public CompletableFuture<T> future() {
+        return future;
+    }
+
+    /**
+     * Returns snapshot of crawl progress. Does not block the crawl.
+     *
+     * @return current progress.
+     */
+    public Progress progress() {
+        return progress.get();
+    }
+
+    /**
+     * Stops scheduling of new downloads and extractions of the crawl, tasks already running are not interrupted.
+     *
+     * @return {@code true} if the crawl was not finished before.
+     */
+    public boolean cancel() {
+        return future.cancel(false);
+    }
+
+    /**
+     * Returns whether the crawl is finished, cancelled or failed.
+     *
+     * @return {@code true} if the crawl is finished.
+     */
+    public boolean isDone() {
+        return future.isDone();
+    }
+}
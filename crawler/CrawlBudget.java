@@ -0,0 +1,134 @@
+package crawler;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Limits of a crawl besides its depth, so a link farm cannot make the crawl unbounded.
+ * Crawl exhausted its budget of pages, bytes or time stops expanding the frontier: running downloads are finished
+ * and reported, while waiting ones are dropped. Host exhausted its budget of pages is skipped, but the crawl goes on.
+ * Failed downloads do not count as pages. Budgets hit by the crawl are reported by {@link Result#exhausted()}.
+ * This class is immutable and thread-safe.
+ *
+ * @author Bogdan Nikitin
+ */
+public final class CrawlBudget {
+    /**
+     * Limit of the budget.
+     */
+    public enum Limit {
+        /** Max number of downloaded pages, see {@link #maxPages(long)}. */
+        PAGES,
+        /** Max number of downloaded bytes, see {@link #maxBytes(long)}. */
+        BYTES,
+        /** Max number of pages downloaded from the same host, see {@link #maxPagesPerHost(int)}. */
+        HOST_PAGES,
+        /** Max duration of the crawl, see {@link #maxDuration(Duration)}. */
+        TIME
+    }
+
+    private static final CrawlBudget UNLIMITED = new CrawlBudget(Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, null);
+
+    private final long maxPages;
+    private final long maxBytes;
+    private final int maxPagesPerHost;
+    private final Duration maxDuration;
+
+    private CrawlBudget(final long maxPages, final long maxBytes, final int maxPagesPerHost, final Duration maxDuration) {
+        this.maxPages = maxPages;
+        this.maxBytes = maxBytes;
+        this.maxPagesPerHost = maxPagesPerHost;
+        this.maxDuration = maxDuration;
+    }
+
+    /**
+     * Returns budget without limits.
+     *
+     * @return unlimited budget.
+     */
+    public static CrawlBudget unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * Returns budget limiting the number of downloaded pages.
+     * Download is not started when the number of downloaded and running ones reaches the limit.
+     * Page downloaded again by {@link CrawlMode#PIPELINED} crawl to expand it deeper counts again.
+     *
+     * @param maxPages max number of pages, positive.
+     * @return new budget.
+     */
+    public CrawlBudget maxPages(final long maxPages) {
+        if (maxPages <= 0) {
+            throw new IllegalArgumentException("Max pages must be positive: " + maxPages);
+        }
+        return new CrawlBudget(maxPages, maxBytes, maxPagesPerHost, maxDuration);
+    }
+
+    /**
+     * Returns budget limiting the total size of downloaded pages, as reported by {@link Document#size()}.
+     * Size is known only after the download, so pages downloaded concurrently with the one exceeding the limit
+     * are still reported.
+     *
+     * @param maxBytes max number of bytes, positive.
+     * @return new budget.
+     */
+    public CrawlBudget maxBytes(final long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Max bytes must be positive: " + maxBytes);
+        }
+        return new CrawlBudget(maxPages, maxBytes, maxPagesPerHost, maxDuration);
+    }
+
+    /**
+     * Returns budget limiting the number of pages downloaded from the same host.
+     *
+     * @param maxPagesPerHost max number of pages of a host, positive.
+     * @return new budget.
+     */
+    public CrawlBudget maxPagesPerHost(final int maxPagesPerHost) {
+        if (maxPagesPerHost <= 0) {
+            throw new IllegalArgumentException("Max pages per host must be positive: " + maxPagesPerHost);
+        }
+        return new CrawlBudget(maxPages, maxBytes, maxPagesPerHost, maxDuration);
+    }
+
+    /**
+     * Returns budget limiting the wall-clock time of the crawl. Downloads are not started after the deadline,
+     * running downloads are finished.
+     *
+     * @param maxDuration max duration of the crawl, positive.
+     * @return new budget.
+     */
+    public CrawlBudget maxDuration(final Duration maxDuration) {
+        if (Objects.requireNonNull(maxDuration).isNegative() || maxDuration.isZero()) {
+            throw new IllegalArgumentException("Max duration must be positive: " + maxDuration);
+        }
+        return new CrawlBudget(maxPages, maxBytes, maxPagesPerHost, maxDuration);
+    }
+
+    long maxPages() {
+        return maxPages;
+    }
+
+    long maxBytes() {
+        return maxBytes;
+    }
+
+    int maxPagesPerHost() {
+        return maxPagesPerHost;
+    }
+
+    /**
+     * Returns max duration in nanoseconds, {@link Long#MAX_VALUE} if time is not limited.
+     */
+    long maxDurationNanos() {
+        return maxDuration == null ? Long.MAX_VALUE : maxDuration.toNanos();
+    }
+
+    @Override
+    public String toString() {
+        return "CrawlBudget[maxPages=" + maxPages + ", maxBytes=" + maxBytes
+                + ", maxPagesPerHost=" + maxPagesPerHost + ", maxDuration=" + maxDuration + "]";
+    }
+}
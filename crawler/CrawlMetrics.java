@@ -0,0 +1,62 @@
+package crawler;
+
+/**
+ * Receives measurements of crawls of {@link WebCrawler}, such as {@link CrawlStatistics}.
+ * Depth is the remaining depth of the URL, so the start URL has the crawl depth and the last level has depth {@code 1}.
+ * Frontier of depth holds URLs accepted for download whose download has not started,
+ * backlog of host holds downloads submitted to the host queue and not started.
+ * Sizes are reported by changes, so URLs left in the frontier of a cancelled crawl are never removed from it.
+ * Methods are called concurrently from worker threads on the hot path,
+ * so implementations must be thread-safe and fast.
+ *
+ * @author Bogdan Nikitin
+ */
+public interface CrawlMetrics {
+    /**
+     * Called when the frontier of the depth changes.
+     *
+     * @param depth remaining depth of URLs.
+     * @param delta change of the number of URLs.
+     */
+    void onFrontier(int depth, int delta);
+
+    /**
+     * Called when the backlog of the host changes.
+     *
+     * @param host  host name.
+     * @param delta change of the number of downloads.
+     */
+    void onBacklog(String host, int delta);
+
+    /**
+     * Called when download waits in the host queue because the host has the max number of running downloads
+     * or its rate limit is exceeded. Download may be deferred several times.
+     *
+     * @param host host name.
+     */
+    void onDeferred(String host);
+
+    /**
+     * Called when download is finished.
+     *
+     * @param host   host name.
+     * @param nanos  duration of the download in nanoseconds.
+     * @param failed whether download failed.
+     */
+    void onDownloaded(String host, long nanos, boolean failed);
+
+    /**
+     * Called when extraction of links is finished.
+     *
+     * @param nanos  duration of the extraction in nanoseconds.
+     * @param failed whether extraction failed.
+     */
+    void onExtracted(long nanos, boolean failed);
+
+    /**
+     * Called when error of a page is reported, including malformed URLs.
+     *
+     * @param depth remaining depth of the page.
+     */
+    void onError(int depth);
+}
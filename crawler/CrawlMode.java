@@ -0,0 +1,21 @@
+package crawler;
+
+/**
+ * Strategy used by {@link WebCrawler} to walk the link graph.
+ *
+ * @author Bogdan Nikitin
+ */
+public enum CrawlMode {
+    /**
+     * Breadth-first crawl, one depth level at a time.
+     * Next level is started only after every page of the current level is downloaded and extracted.
+     */
+    LEVEL,
+    /**
+     * Pipelined crawl without level barriers.
+     * Every URL carries its own remaining depth and extracted links are scheduled immediately,
+     * so a slow host delays only the pages reachable through it.
+     * Downloads the same set of pages as {@link #LEVEL}.
+     */
+    PIPELINED
+}
@@ -0,0 +1,205 @@
+package crawler;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics collected in memory by striped counters and {@link LatencyHistogram}s,
+ * so recording threads do not contend. Hosts are kept for the lifetime of the statistics.
+ * Values are read without stopping recording, so values read together may be slightly inconsistent.
+ * This class is thread-safe.
+ *
+ * @author Bogdan Nikitin
+ */
+public final class CrawlStatistics implements CrawlMetrics {
+    private final long started = System.nanoTime();
+    private final LongAdder downloads = new LongAdder();
+    private final LongAdder failedDownloads = new LongAdder();
+    private final LongAdder extractions = new LongAdder();
+    private final LongAdder failedExtractions = new LongAdder();
+    private final LongAdder deferrals = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram downloadLatency = new LatencyHistogram();
+    private final LatencyHistogram extractLatency = new LatencyHistogram();
+    private final ConcurrentMap<Integer, LongAdder> frontier = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> backlog = new ConcurrentHashMap<>();
+
+    @Override
+    public void onFrontier(final int depth, final int delta) {
+        add(frontier, depth, delta);
+    }
+
+    @Override
+    public void onBacklog(final String host, final int delta) {
+        add(backlog, host, delta);
+    }
+
+    private static <K> void add(final ConcurrentMap<K, LongAdder> counters, final K key, final int delta) {
+        LongAdder counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, ignored -> new LongAdder());
+        }
+        counter.add(delta);
+    }
+
+    @Override
+    public void onDeferred(final String host) {
+        deferrals.increment();
+    }
+
+    @Override
+    public void onDownloaded(final String host, final long nanos, final boolean failed) {
+        downloads.increment();
+        if (failed) {
+            failedDownloads.increment();
+        }
+        downloadLatency.record(nanos);
+    }
+
+    @Override
+    public void onExtracted(final long nanos, final boolean failed) {
+        extractions.increment();
+        if (failed) {
+            failedExtractions.increment();
+        }
+        extractLatency.record(nanos);
+    }
+
+    @Override
+    public void onError(final int depth) {
+        errors.increment();
+    }
+
+    /**
+     * Returns the number of finished downloads, including failed ones.
+     *
+     * @return number of downloads.
+     */
+    public long downloads() {
+        return downloads.sum();
+    }
+
+    /**
+     * Returns the number of failed downloads.
+     *
+     * @return number of failed downloads.
+     */
+    public long failedDownloads() {
+        return failedDownloads.sum();
+    }
+
+    /**
+     * Returns the number of finished extractions, including failed ones.
+     *
+     * @return number of extractions.
+     */
+    public long extractions() {
+        return extractions.sum();
+    }
+
+    /**
+     * Returns the number of failed extractions.
+     *
+     * @return number of failed extractions.
+     */
+    public long failedExtractions() {
+        return failedExtractions.sum();
+    }
+
+    /**
+     * Returns the number of times downloads waited in host queues.
+     *
+     * @return number of deferrals.
+     */
+    public long deferrals() {
+        return deferrals.sum();
+    }
+
+    /**
+     * Returns the number of reported errors.
+     *
+     * @return number of errors.
+     */
+    public long errors() {
+        return errors.sum();
+    }
+
+    /**
+     * Returns the mean number of finished downloads per second since the statistics were created.
+     *
+     * @return downloads per second.
+     */
+    public double downloadsPerSecond() {
+        final long elapsed = System.nanoTime() - started;
+        return elapsed <= 0 ? 0 : downloads.sum() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * Returns the number of failed downloads and extractions per finished download.
+     *
+     * @return error rate.
+     */
+    public double errorRate() {
+        final long total = downloads.sum();
+        return total == 0 ? 0 : (failedDownloads.sum() + failedExtractions.sum()) / (double) total;
+    }
+
+    /**
+     * Returns durations of downloads.
+     *
+     * @return live histogram of download durations.
+     */
+    public LatencyHistogram downloadLatency() {
+        return downloadLatency;
+    }
+
+    /**
+     * Returns durations of extractions.
+     *
+     * @return live histogram of extraction durations.
+     */
+    public LatencyHistogram extractLatency() {
+        return extractLatency;
+    }
+
+    /**
+     * Returns sizes of non-empty frontiers by remaining depth.
+     *
+     * @return number of URLs waiting for download by remaining depth.
+     */
+    public Map<Integer, Long> frontierSizes() {
+        return nonEmpty(frontier);
+    }
+
+    /**
+     * Returns non-empty backlogs of hosts.
+     *
+     * @return number of downloads waiting in the host queue by host name.
+     */
+    public Map<String, Long> hostBacklogs() {
+        return nonEmpty(backlog);
+    }
+
+    private static <K> Map<K, Long> nonEmpty(final ConcurrentMap<K, LongAdder> counters) {
+        final Map<K, Long> sizes = new TreeMap<>();
+        counters.forEach((key, counter) -> {
+            final long size = counter.sum();
+            if (size > 0) {
+                sizes.put(key, size);
+            }
+        });
+        return sizes;
+    }
+
+    @Override
+    public String toString() {
+        return "CrawlStatistics[downloads=" + downloads() + ", failedDownloads=" + failedDownloads()
+                + ", extractions=" + extractions() + ", failedExtractions=" + failedExtractions()
+                + ", deferrals=" + deferrals() + ", errors=" + errors()
+                + ", downloadLatency=" + downloadLatency + ", extractLatency=" + extractLatency + "]";
+    }
+}
@@ -15,4 +15,13 @@ public interface Document {
      * @throws IOException if an error occurred.
      */
     List<String> extractLinks() throws IOException;
+
+    /**
+     * Returns size of downloaded document, counted by {@link CrawlBudget#maxBytes(long)}.
+     *
+     * @return size in bytes, {@code 0} if unknown.
+     */
+    default long size() {
+        return 0;
+    }
 }
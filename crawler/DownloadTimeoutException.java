@@ -0,0 +1,39 @@
+package crawler;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.time.Duration;
+
+/**
+ * Signals that {@link Downloader#download(String)} did not finish within the download timeout of {@link WebCrawler}.
+ * Timed out download is interrupted and abandoned, so its result is ignored.
+ *
+ * @author Bogdan Nikitin
+ */
+public class DownloadTimeoutException extends IOException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /** Serialized with the exception, as {@link Duration} is serializable. */
+    private final Duration timeout;
+
+    /**
+     * Creates a new {@code DownloadTimeoutException}.
+     *
+     * @param url     URL of the timed out download.
+     * @param timeout exceeded timeout.
+     */
+    public DownloadTimeoutException(final String url, final Duration timeout) {
+        super("Download of " + url + " timed out after " + timeout);
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns exceeded timeout.
+     *
+     * @return download timeout.
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+}
@@ -0,0 +1,125 @@
+package crawler;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Memory-lean {@link VisitedSet} keeping 112-bit fingerprints of URLs instead of URLs themselves.
+ * Every URL takes 16 bytes in an open-addressing table, optionally allocated off-heap.
+ * Two different URLs are mistaken for each other with probability about {@code 2^-112} per pair,
+ * remaining depths greater than {@value #MAX_DEPTH} are saturated.
+ * Table is split into independently locked and resized segments.
+ *
+ * @author Bogdan Nikitin
+ */
+public class FingerprintVisitedSet implements VisitedSet {
+    /**
+     * Max remaining depth distinguished by this set.
+     */
+    public static final int MAX_DEPTH = 0xFFFE;
+
+    private static final int DEPTH_MASK = 0xFFFF;
+    private static final int SEGMENT_BITS = 6;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+    private static final int DEFAULT_EXPECTED_URLS = 1 << 16;
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    /**
+     * Creates on-heap set sized for a small crawl. Set grows as needed.
+     */
+    public FingerprintVisitedSet() {
+        this(DEFAULT_EXPECTED_URLS, false);
+    }
+
+    /**
+     * Creates set sized for the given number of URLs. Set grows as needed.
+     *
+     * @param expectedUrls expected number of visited URLs.
+     * @param offHeap      whether to allocate tables in direct memory.
+     */
+    public FingerprintVisitedSet(final int expectedUrls, final boolean offHeap) {
+        final int perSegment = Math.max(MIN_SEGMENT_CAPACITY, expectedUrls / segments.length * 4 / 3);
+        final int capacity = Integer.highestOneBit(perSegment - 1) << 1;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(capacity, offHeap);
+        }
+    }
+
+    @Override
+    public int add(final String url, final int depth) {
+        final long high = Fingerprints.high(url);
+        final long low = Fingerprints.low(url) & ~DEPTH_MASK;
+        return segments[(int) (high >>> (Long.SIZE - SEGMENT_BITS))].add(high, low, Math.min(depth, MAX_DEPTH));
+    }
+
+    /**
+     * Open-addressing table of pairs {@code (high, low | (depth + 1))}. Slot is empty if its low word is zero.
+     */
+    private static class Segment {
+        private final boolean offHeap;
+        private LongBuffer table;
+        private int capacity;
+        private int size;
+
+        Segment(final int capacity, final boolean offHeap) {
+            this.offHeap = offHeap;
+            this.capacity = capacity;
+            this.table = allocate(capacity);
+        }
+
+        private LongBuffer allocate(final int capacity) {
+            final int bytes = capacity * 2 * Long.BYTES;
+            return (offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes))
+                    .order(ByteOrder.nativeOrder())
+                    .asLongBuffer();
+        }
+
+        synchronized int add(final long high, final long low, final int depth) {
+            final int slot = find(table, capacity, high, low);
+            final long stored = table.get(2 * slot + 1);
+            if (stored == 0) {
+                table.put(2 * slot, high);
+                table.put(2 * slot + 1, low | (depth + 1));
+                if (++size * 4 > capacity * 3) {
+                    grow();
+                }
+                return NOT_VISITED;
+            }
+            final int previous = (int) (stored & DEPTH_MASK) - 1;
+            if (previous < depth) {
+                table.put(2 * slot + 1, low | (depth + 1));
+            }
+            return previous;
+        }
+
+        private static int find(final LongBuffer table, final int capacity, final long high, final long low) {
+            final int mask = capacity - 1;
+            int slot = (int) high & mask;
+            while (true) {
+                final long stored = table.get(2 * slot + 1);
+                if (stored == 0 || table.get(2 * slot) == high && (stored & ~DEPTH_MASK) == low) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private void grow() {
+            final int newCapacity = capacity * 2;
+            final LongBuffer newTable = allocate(newCapacity);
+            for (int i = 0; i < capacity; i++) {
+                final long stored = table.get(2 * i + 1);
+                if (stored != 0) {
+                    final long high = table.get(2 * i);
+                    final int slot = find(newTable, newCapacity, high, stored & ~DEPTH_MASK);
+                    newTable.put(2 * slot, high);
+                    newTable.put(2 * slot + 1, stored);
+                }
+            }
+            table = newTable;
+            capacity = newCapacity;
+        }
+    }
+}
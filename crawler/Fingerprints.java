@@ -0,0 +1,36 @@
+package crawler;
+
+/**
+ * Non-cryptographic 128-bit fingerprints of URLs.
+ *
+ * @author Bogdan Nikitin
+ */
+final class Fingerprints {
+    private Fingerprints() {}
+
+    /**
+     * Returns high 64 bits of URL fingerprint.
+     */
+    static long high(final String url) {
+        return hash(url, 0xCBF29CE484222325L, 0x100000001B3L);
+    }
+
+    /**
+     * Returns low 64 bits of URL fingerprint.
+     */
+    static long low(final String url) {
+        return hash(url, 0x84222325CBF29CE4L, 0x9E3779B97F4A7C15L);
+    }
+
+    private static long hash(final String url, final long seed, final long prime) {
+        long hash = seed;
+        for (int i = 0; i < url.length(); i++) {
+            hash = (hash ^ url.charAt(i)) * prime;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,22 @@
+package crawler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Exact {@link VisitedSet} keeping full URLs in a {@link ConcurrentHashMap}.
+ *
+ * @author Bogdan Nikitin
+ */
+public class HashVisitedSet implements VisitedSet {
+    private final ConcurrentMap<String, Integer> visited = new ConcurrentHashMap<>();
+
+    @Override
+    public int add(final String url, final int depth) {
+        Integer previous = visited.putIfAbsent(url, depth);
+        while (previous != null && previous < depth && !visited.replace(url, previous, depth)) {
+            previous = visited.get(url);
+        }
+        return previous == null ? NOT_VISITED : previous;
+    }
+}
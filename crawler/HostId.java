@@ -0,0 +1,47 @@
+package crawler;
+
+/**
+ * Canonical identifier of a host, used as a per-host tag of {@link BoundedExecutor}.
+ * Identifiers are obtained from {@link HostTable}, so identifiers of the same host are usually the same object
+ * and compare by identity. Hash is computed once, before the identifier is created.
+ * Identifiers of the same host evicted from the table and created again are still equal.
+ *
+ * @author Bogdan Nikitin
+ */
+final class HostId {
+    private final String name;
+    private final int hash;
+
+    /**
+     * Creates identifier.
+     *
+     * @param name host name.
+     * @param hash {@link String#hashCode()} of the name.
+     */
+    HostId(final String name, final int hash) {
+        this.name = name;
+        this.hash = hash;
+    }
+
+    /**
+     * Returns host name.
+     */
+    String name() {
+        return name;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return this == o || o instanceof HostId other && hash == other.hash && name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,62 @@
+package crawler;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded table interning host names into {@link HostId HostIds}.
+ * Table is a direct-mapped cache: every host has a single slot, and a host taking the slot of another one evicts it.
+ * Lookups and replacements do not take locks.
+ *
+ * <p>Table is a {@link URLUtils.HostFactory}, so canonical hosts are looked up by their region of the URL
+ * with the hash computed while the host is validated, and a name is allocated only when the host is missed.
+ *
+ * @author Bogdan Nikitin
+ */
+final class HostTable implements URLUtils.HostFactory<HostId> {
+    private final AtomicReferenceArray<HostId> slots;
+    private final int mask;
+
+    /**
+     * Creates table.
+     *
+     * @param capacity max number of interned hosts, rounded up to a power of two.
+     */
+    HostTable(final int capacity) {
+        final int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    private int index(final int hash) {
+        return (hash ^ hash >>> 16) & mask;
+    }
+
+    @Override
+    public HostId region(final String url, final int start, final int end, final int hash) {
+        final int index = index(hash);
+        final HostId current = slots.getPlain(index);
+        final int length = end - start;
+        if (current != null && current.hashCode() == hash
+                && current.name().length() == length && url.regionMatches(start, current.name(), 0, length)) {
+            return current;
+        }
+        return replace(index, new HostId(url.substring(start, end), hash));
+    }
+
+    @Override
+    public HostId name(final String host) {
+        final int hash = host.hashCode();
+        final int index = index(hash);
+        final HostId current = slots.getPlain(index);
+        if (current != null && current.hashCode() == hash && current.name().equals(host)) {
+            return current;
+        }
+        return replace(index, new HostId(host, hash));
+    }
+
+    private HostId replace(final int index, final HostId id) {
+        // Racing threads may create different but equal identifiers, which only costs identity comparisons
+        slots.setRelease(index, id);
+        return id;
+    }
+}
@@ -0,0 +1,125 @@
+package crawler;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations with log-linear buckets, as HdrHistogram has.
+ * Every power of two range is split into {@value #SUB_BUCKETS} buckets,
+ * so recorded values are kept with relative error below {@code 1 / }{@value #SUB_BUCKETS}
+ * in a fixed array, and recording is a single atomic increment without locks or allocation.
+ * Values are read without stopping recording, so a read may miss values recorded concurrently.
+ * This class is thread-safe.
+ *
+ * @author Bogdan Nikitin
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Values below {@link #SUB_BUCKETS} are exact, every greater power of two has its sub-buckets. */
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records duration. Negative durations are recorded as zero.
+     *
+     * @param nanos duration in nanoseconds.
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(nanos, 0);
+        counts.incrementAndGet(index(value));
+        total.increment();
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    private static int index(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Returns the greatest value of the bucket.
+     */
+    private static long highest(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) - 1);
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return number of durations.
+     */
+    public long count() {
+        return total.sum();
+    }
+
+    /**
+     * Returns mean of recorded durations.
+     *
+     * @return mean duration, zero if nothing is recorded.
+     */
+    public Duration mean() {
+        final long count = total.sum();
+        return Duration.ofNanos(count == 0 ? 0 : sum.sum() / count);
+    }
+
+    /**
+     * Returns max recorded duration.
+     *
+     * @return max duration, zero if nothing is recorded.
+     */
+    public Duration max() {
+        return Duration.ofNanos(max.get());
+    }
+
+    /**
+     * Returns duration not exceeded by the given share of recorded durations, up to the bucket precision.
+     *
+     * @param percentile percentile in {@code [0, 100]}.
+     * @return percentile of durations, zero if nothing is recorded.
+     */
+    public Duration percentile(final double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile must be in [0, 100]: " + percentile);
+        }
+        final long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Duration.ofNanos(Math.min(highest(i), max.get()));
+            }
+        }
+        return Duration.ZERO;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram[count=" + count() + ", mean=" + mean() + ", p50=" + percentile(50)
+                + ", p99=" + percentile(99) + ", max=" + max() + "]";
+    }
+}
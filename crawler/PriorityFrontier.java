@@ -0,0 +1,180 @@
+package crawler;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Frontier of the next crawl level ordered by priority of URLs.
+ * Every priority has its own {@link SpillingFrontier} bucket, so adding URLs takes no global lock or heap,
+ * and the level is drained from the greatest priority to the least. URLs of the same priority keep the order
+ * of {@link SpillingFrontier}. Memory limit is shared by buckets equally.
+ *
+ * <p>Frontier is filled concurrently and drained when nothing is appended,
+ * as {@link SpillingFrontier} is. Failed disk operations throw {@link UncheckedIOException}.
+ *
+ * @author Bogdan Nikitin
+ */
+final class PriorityFrontier implements AutoCloseable {
+    private final SpillingFrontier[] buckets;
+    private final ToIntFunction<String> priority;
+
+    /**
+     * Creates frontier.
+     *
+     * @param limit    max number of URLs kept in memory.
+     * @param parent   directory to create temporary directories of segments in,
+     *                 or {@code null} to keep every URL in memory.
+     * @param priority priority of URL in {@code [0, levels)}, greater first. Priorities out of range are clamped.
+     *                 {@code null} to keep URLs in a single bucket.
+     * @param levels   number of priorities, positive.
+     */
+    PriorityFrontier(final int limit, final Path parent, final ToIntFunction<String> priority, final int levels) {
+        final int buckets = priority == null ? 1 : levels;
+        this.buckets = new SpillingFrontier[buckets];
+        for (int i = 0; i < buckets; i++) {
+            this.buckets[i] = new SpillingFrontier(Math.max(1, limit / buckets), parent);
+        }
+        this.priority = priority;
+    }
+
+    private int bucket(final String url) {
+        return Math.min(Math.max(priority.applyAsInt(url), 0), buckets.length - 1);
+    }
+
+    /**
+     * Appends URLs. Can be called concurrently.
+     *
+     * @param urls URLs to append.
+     */
+    void addAll(final Collection<String> urls) {
+        if (buckets.length == 1) {
+            buckets[0].addAll(urls);
+            return;
+        }
+        final List<List<String>> groups = new ArrayList<>(buckets.length);
+        for (int i = 0; i < buckets.length; i++) {
+            groups.add(null);
+        }
+        for (final String url : urls) {
+            final int bucket = bucket(url);
+            List<String> group = groups.get(bucket);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.set(bucket, group);
+            }
+            group.add(url);
+        }
+        for (int i = 0; i < buckets.length; i++) {
+            if (groups.get(i) != null) {
+                buckets[i].addAll(groups.get(i));
+            }
+        }
+    }
+
+    /**
+     * Appends URL. Can be called concurrently.
+     *
+     * @param url URL to append.
+     */
+    void add(final String url) {
+        buckets[buckets.length == 1 ? 0 : bucket(url)].add(url);
+    }
+
+    /**
+     * Removes all URLs, returning cursor over them from the greatest priority.
+     *
+     * @return cursor over the removed URLs.
+     */
+    Cursor drain() {
+        final SpillingFrontier.Cursor[] cursors = new SpillingFrontier.Cursor[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            cursors[i] = buckets[buckets.length - 1 - i].drain();
+        }
+        return new Cursor(cursors);
+    }
+
+    /**
+     * Deletes files of every bucket.
+     * Cursors returned by {@link #drain()} should be closed before.
+     */
+    @Override
+    public void close() {
+        closeAll(buckets, SpillingFrontier::close);
+    }
+
+    /**
+     * Closes every resource, throwing the first failure after all are closed.
+     */
+    private static <R> void closeAll(final R[] resources, final Consumer<R> close) {
+        UncheckedIOException failure = null;
+        for (final R resource : resources) {
+            try {
+                close.accept(resource);
+            } catch (final UncheckedIOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Streaming reader of drained URLs from the greatest priority. This class is thread-safe.
+     */
+    static final class Cursor implements AutoCloseable {
+        private final SpillingFrontier.Cursor[] cursors;
+        private final long size;
+        private int index;
+
+        private Cursor(final SpillingFrontier.Cursor[] cursors) {
+            this.cursors = cursors;
+            long size = 0;
+            for (final SpillingFrontier.Cursor cursor : cursors) {
+                size += cursor.size();
+            }
+            this.size = size;
+        }
+
+        /**
+         * Returns the number of drained URLs.
+         *
+         * @return number of URLs, including already read ones.
+         */
+        long size() {
+            return size;
+        }
+
+        /**
+         * Reads the next URL.
+         *
+         * @return the next URL or {@code null} if all URLs are read.
+         */
+        synchronized String poll() {
+            while (index < cursors.length) {
+                final String url = cursors[index].poll();
+                if (url != null) {
+                    return url;
+                }
+                index++;
+            }
+            return null;
+        }
+
+        /**
+         * Deletes segment files of unread URLs.
+         */
+        @Override
+        public synchronized void close() {
+            index = cursors.length;
+            closeAll(cursors, SpillingFrontier.Cursor::close);
+        }
+    }
+}
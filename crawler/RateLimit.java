@@ -0,0 +1,83 @@
+package crawler;
+
+import java.time.Duration;
+
+/**
+ * Limit of the rate of requests to the same host, such as {@code Crawl-delay} of {@code robots.txt}.
+ * Requests are spaced by the interval on average, and up to the burst of requests may start back to back
+ * after the host was idle, as a token bucket of the burst size refilled once per interval allows.
+ * This class is immutable and thread-safe.
+ *
+ * @author Bogdan Nikitin
+ */
+public final class RateLimit {
+    private final long intervalNanos;
+    private final int burst;
+
+    private RateLimit(final long intervalNanos, final int burst) {
+        if (intervalNanos <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + intervalNanos + "ns");
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException("Burst must be positive: " + burst);
+        }
+        this.intervalNanos = intervalNanos;
+        this.burst = burst;
+    }
+
+    /**
+     * Creates limit allowing a request to start not earlier than the given delay after the previous one.
+     *
+     * @param delay min delay between starts of requests.
+     * @return new limit.
+     */
+    public static RateLimit delay(final Duration delay) {
+        return new RateLimit(delay.toNanos(), 1);
+    }
+
+    /**
+     * Creates limit allowing the given number of requests per second.
+     *
+     * @param requests max number of requests per second.
+     * @return new limit.
+     */
+    public static RateLimit perSecond(final double requests) {
+        if (!(requests > 0)) {
+            throw new IllegalArgumentException("Rate must be positive: " + requests);
+        }
+        return new RateLimit((long) (Duration.ofSeconds(1).toNanos() / requests), 1);
+    }
+
+    /**
+     * Returns limit with the same rate allowing the given number of requests to start at once.
+     *
+     * @param burst max number of requests started at once.
+     * @return new limit.
+     */
+    public RateLimit burst(final int burst) {
+        return new RateLimit(intervalNanos, burst);
+    }
+
+    /**
+     * Returns average interval between starts of requests in nanoseconds.
+     *
+     * @return interval between requests.
+     */
+    long intervalNanos() {
+        return intervalNanos;
+    }
+
+    /**
+     * Returns how much earlier than the interval a request may start in nanoseconds, due to the burst.
+     *
+     * @return burst tolerance.
+     */
+    long toleranceNanos() {
+        return intervalNanos * (burst - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimit[interval=" + Duration.ofNanos(intervalNanos) + ", burst=" + burst + "]";
+    }
+}
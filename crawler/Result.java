@@ -3,20 +3,37 @@ package crawler;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Crawling result.
  */
-public record Result(List<String> downloaded, Map<String, IOException> errors) {
+public record Result(List<String> downloaded, Map<String, IOException> errors, Set<CrawlBudget.Limit> exhausted) {
     /**
-     * Creates a new {@code Result}.
+     * Creates a new {@code Result} of crawl finished within its budget.
      *
      * @param downloaded list of successfully downloaded pages.
      * @param errors     pages downloaded with errors.
      */
     public Result(final List<String> downloaded, final Map<String, IOException> errors) {
+        this(downloaded, errors, Set.of());
+    }
+
+    /**
+     * Creates a new {@code Result}.
+     *
+     * @param downloaded list of successfully downloaded pages.
+     * @param errors     pages downloaded with errors.
+     * @param exhausted  limits of the crawl budget hit by the crawl.
+     */
+    public Result(
+            final List<String> downloaded,
+            final Map<String, IOException> errors,
+            final Set<CrawlBudget.Limit> exhausted
+    ) {
         this.downloaded = List.copyOf(downloaded);
         this.errors = Map.copyOf(errors);
+        this.exhausted = Set.copyOf(exhausted);
     }
 
     /**
@@ -34,4 +51,13 @@ public record Result(List<String> downloaded, Map<String, IOException> errors) {
     public Map<String, IOException> errors() {
         return errors;
     }
+
+    /**
+     * Returns limits of the crawl budget hit by the crawl, so some pages within the depth were not downloaded.
+     * Empty if the crawl finished within its budget.
+     */
+    @Override
+    public Set<CrawlBudget.Limit> exhausted() {
+        return exhausted;
+    }
 }
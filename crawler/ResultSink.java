@@ -0,0 +1,38 @@
+package crawler;
+
+import java.io.IOException;
+
+/**
+ * Receives crawling results as soon as pages are processed,
+ * so crawl results need not be kept in memory.
+ * Methods are called concurrently from worker threads, so implementations must be thread-safe.
+ *
+ * @author Bogdan Nikitin
+ */
+public interface ResultSink {
+    /**
+     * Called when page is successfully downloaded.
+     *
+     * @param url      URL of the page.
+     * @param document downloaded document.
+     */
+    void onDownloaded(String url, Document document);
+
+    /**
+     * Called when page cannot be downloaded or links cannot be extracted from it.
+     * In the latter case page was already reported to {@link #onDownloaded(String, Document)}.
+     *
+     * @param url       URL of the page.
+     * @param exception occurred error.
+     */
+    void onError(String url, IOException exception);
+
+    /**
+     * Called when the crawl hits a limit of its {@link CrawlBudget}, once per limit.
+     * Pages already downloading may still be reported.
+     *
+     * @param limit exhausted limit.
+     */
+    default void onExhausted(CrawlBudget.Limit limit) {
+    }
+}
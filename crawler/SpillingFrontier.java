@@ -0,0 +1,261 @@
+package crawler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Frontier of the next crawl level keeping a bounded number of URLs in memory.
+ * URLs are collected by {@link StripedFrontier}; stripe exceeding its share of the limit is appended
+ * to a compressed segment file, so memory stays flat regardless of the level width.
+ * Segments are written and read sequentially and deleted as soon as they are read.
+ * Segment files are created in a temporary directory, which is created on the first spill.
+ *
+ * <p>Frontier is filled concurrently and drained when nothing is appended,
+ * as {@link StripedFrontier} is. Failed disk operations throw {@link UncheckedIOException}.
+ *
+ * @author Bogdan Nikitin
+ */
+final class SpillingFrontier implements AutoCloseable {
+    /** Number of URLs per segment, so consumed part of the level is deleted while the level is downloaded. */
+    private static final int SEGMENT_SIZE = 1 << 20;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Segment file and the number of URLs in it.
+     */
+    private record Segment(Path file, int size) {
+    }
+
+    private final StripedFrontier<String> head;
+    private final Path parent;
+    private Path directory;
+    private Queue<Segment> segments = new ArrayDeque<>();
+    private long spilled;
+    private Path file;
+    private Deflater deflater;
+    private DataOutputStream out;
+    private int written;
+    private int created;
+
+    /**
+     * Creates frontier.
+     *
+     * @param limit  max number of URLs kept in memory.
+     * @param parent directory to create the temporary directory of segments in,
+     *               or {@code null} to keep every URL in memory.
+     */
+    SpillingFrontier(final int limit, final Path parent) {
+        this.head = parent == null ? new StripedFrontier<>() : new StripedFrontier<>(limit);
+        this.parent = parent;
+    }
+
+    /**
+     * Appends URLs. Can be called concurrently.
+     *
+     * @param urls URLs to append.
+     */
+    void addAll(final Collection<String> urls) {
+        spill(head.addAll(urls));
+    }
+
+    /**
+     * Appends URL. Can be called concurrently.
+     *
+     * @param url URL to append.
+     */
+    void add(final String url) {
+        spill(head.add(url));
+    }
+
+    private synchronized void spill(final List<String> urls) {
+        if (urls.isEmpty()) {
+            return;
+        }
+        try {
+            if (out == null) {
+                if (directory == null) {
+                    directory = Files.createTempDirectory(parent, "frontier");
+                }
+                file = directory.resolve("segment-" + created++);
+                deflater = new Deflater(Deflater.BEST_SPEED);
+                out = new DataOutputStream(new BufferedOutputStream(
+                        new DeflaterOutputStream(Files.newOutputStream(file), deflater, BUFFER_SIZE),
+                        BUFFER_SIZE
+                ));
+            }
+            for (final String url : urls) {
+                final byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            written += urls.size();
+            spilled += urls.size();
+            if (written >= SEGMENT_SIZE) {
+                finishSegment();
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void finishSegment() throws IOException {
+        try {
+            out.close();
+        } finally {
+            deflater.end();
+        }
+        segments.add(new Segment(file, written));
+        out = null;
+        written = 0;
+    }
+
+    /**
+     * Removes all URLs, returning cursor over them.
+     * URLs kept in memory go first, followed by spilled ones in the order they were spilled.
+     *
+     * @return cursor over the removed URLs.
+     */
+    synchronized Cursor drain() {
+        if (out != null) {
+            try {
+                finishSegment();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        final Cursor cursor = new Cursor(head.drain(), segments, spilled);
+        segments = new ArrayDeque<>();
+        spilled = 0;
+        return cursor;
+    }
+
+    /**
+     * Deletes segment files and the temporary directory.
+     * Cursors returned by {@link #drain()} should be closed before.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            if (out != null) {
+                finishSegment();
+            }
+            new Cursor(List.of(), segments, spilled).close();
+            if (directory != null) {
+                Files.deleteIfExists(directory);
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Streaming reader of drained URLs. This class is thread-safe.
+     */
+    static final class Cursor implements AutoCloseable {
+        private final List<String> memory;
+        private final Queue<Segment> segments;
+        private final long size;
+        private int index;
+        private Inflater inflater;
+        private DataInputStream in;
+        private Segment current;
+        private int left;
+
+        private Cursor(final List<String> memory, final Queue<Segment> segments, final long spilled) {
+            this.memory = memory;
+            this.segments = segments;
+            this.size = memory.size() + spilled;
+        }
+
+        /**
+         * Returns the number of drained URLs.
+         *
+         * @return number of URLs, including already read ones.
+         */
+        long size() {
+            return size;
+        }
+
+        /**
+         * Reads the next URL.
+         *
+         * @return the next URL or {@code null} if all URLs are read.
+         */
+        synchronized String poll() {
+            if (index < memory.size()) {
+                // Read URLs are released as they go
+                return memory.set(index++, null);
+            }
+            try {
+                while (left == 0) {
+                    closeSegment();
+                    final Segment next = segments.poll();
+                    if (next == null) {
+                        return null;
+                    }
+                    final InputStream stream = Files.newInputStream(next.file());
+                    inflater = new Inflater();
+                    in = new DataInputStream(new BufferedInputStream(
+                            new InflaterInputStream(stream, inflater, BUFFER_SIZE),
+                            BUFFER_SIZE
+                    ));
+                    current = next;
+                    left = next.size();
+                }
+                final byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                left--;
+                return new String(bytes, StandardCharsets.UTF_8);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void closeSegment() throws IOException {
+            if (current == null) {
+                return;
+            }
+            try {
+                in.close();
+            } finally {
+                inflater.end();
+                Files.delete(current.file());
+                current = null;
+                in = null;
+            }
+        }
+
+        /**
+         * Deletes segment files of unread URLs.
+         */
+        @Override
+        public synchronized void close() {
+            try {
+                closeSegment();
+                while (!segments.isEmpty()) {
+                    Files.deleteIfExists(segments.remove().file());
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            left = 0;
+            index = memory.size();
+        }
+    }
+}
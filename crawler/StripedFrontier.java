@@ -0,0 +1,103 @@
+package crawler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Frontier of the next crawl level filled concurrently by extracting threads.
+ * Elements are appended to one of several stripes chosen by the appending thread,
+ * so threads rarely contend on the same lock. Stripes are merged when the level is drained.
+ * Order of elements appended by different threads is unspecified.
+ * Stripe exceeding its share of the limit is emptied and its elements are returned to the appending thread,
+ * which can move them elsewhere, so memory of the frontier stays bounded.
+ *
+ * @param <E> type of elements.
+ *
+ * @author Bogdan Nikitin
+ */
+final class StripedFrontier<E> {
+    private final List<List<E>> stripes;
+    private final int mask;
+    private final int stripeLimit;
+
+    /**
+     * Creates unbounded frontier with at least twice as many stripes as available processors.
+     */
+    StripedFrontier() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates frontier with at least twice as many stripes as available processors,
+     * keeping about {@code limit} elements at most.
+     *
+     * @param limit max number of elements kept by all stripes.
+     */
+    StripedFrontier(final int limit) {
+        final int size = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1);
+        this.stripes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            stripes.add(new ArrayList<>());
+        }
+        this.mask = size - 1;
+        this.stripeLimit = Math.max(1, limit / size);
+    }
+
+    /**
+     * Appends elements to the stripe of the current thread. Can be called concurrently.
+     *
+     * @param elements elements to append.
+     * @return elements removed from the stripe as it exceeded the limit, possibly empty.
+     */
+    List<E> addAll(final Collection<? extends E> elements) {
+        if (elements.isEmpty()) {
+            return List.of();
+        }
+        final List<E> stripe = stripes.get((int) Thread.currentThread().threadId() & mask);
+        synchronized (stripe) {
+            stripe.addAll(elements);
+            return overflow(stripe);
+        }
+    }
+
+    /**
+     * Appends element to the stripe of the current thread. Can be called concurrently.
+     *
+     * @param element element to append.
+     * @return elements removed from the stripe as it exceeded the limit, possibly empty.
+     */
+    List<E> add(final E element) {
+        final List<E> stripe = stripes.get((int) Thread.currentThread().threadId() & mask);
+        synchronized (stripe) {
+            stripe.add(element);
+            return overflow(stripe);
+        }
+    }
+
+    private List<E> overflow(final List<E> stripe) {
+        if (stripe.size() <= stripeLimit) {
+            return List.of();
+        }
+        final List<E> elements = new ArrayList<>(stripe);
+        stripe.clear();
+        return elements;
+    }
+
+    /**
+     * Removes all elements and returns them.
+     * Elements appended concurrently with draining may be left for the next drain.
+     *
+     * @return elements of every stripe.
+     */
+    List<E> drain() {
+        final List<E> elements = new ArrayList<>();
+        for (final List<E> stripe : stripes) {
+            synchronized (stripe) {
+                elements.addAll(stripe);
+                stripe.clear();
+            }
+        }
+        return elements;
+    }
+}
@@ -0,0 +1,170 @@
+package crawler;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Checks whether a string contains one of the given substrings in a single pass over the string,
+ * regardless of the number of substrings.
+ * Substrings are compiled into <a href="https://en.wikipedia.org/wiki/Aho%E2%80%93Corasick_algorithm">Aho–Corasick</a>
+ * automaton. Transitions by ASCII characters occurring in substrings form a complete table,
+ * so ASCII characters are matched by a single lookup. Transitions by other characters are sparse trie edges
+ * followed by failure links, so the automaton takes memory linear in the total length of substrings
+ * whatever alphabet they use.
+ * This class is immutable and thread-safe.
+ *
+ * @author Bogdan Nikitin
+ */
+final class SubstringMatcher {
+    private static final int ROOT = 0;
+
+    /** Character classes of ASCII characters, class {@code 0} is for characters not occurring in substrings. */
+    private final int[] classes = new int[0x80];
+    private final int width;
+    /** Transitions by ASCII character classes, {@code width} per state. */
+    private final int[] transitions;
+    /** Trie edges by non-ASCII characters, keyed by {@link #key(int, char)} and sorted, and their targets. */
+    private final long[] edgeKeys;
+    private final int[] edgeTargets;
+    /** Failure states, followed by non-ASCII characters without trie edges. */
+    private final int[] failures;
+    /** Whether a substring ends at the state. */
+    private final boolean[] accepting;
+    private final boolean matchesAll;
+
+    /**
+     * Compiles substrings.
+     *
+     * @param substrings substrings to look for.
+     */
+    SubstringMatcher(final Collection<String> substrings) {
+        final int[] chars = substrings.stream()
+                .flatMapToInt(String::chars)
+                .filter(c -> c < 0x80)
+                .distinct()
+                .sorted()
+                .toArray();
+        for (int i = 0; i < chars.length; i++) {
+            classes[chars[i]] = i + 1;
+        }
+        width = chars.length + 1;
+        matchesAll = substrings.contains("");
+
+        final int maxStates = substrings.stream().mapToInt(String::length).sum() + 1;
+        final int[] trie = new int[Math.multiplyExact(maxStates, width)];
+        final boolean[] ends = new boolean[maxStates];
+        final Map<Long, Integer> edges = new HashMap<>();
+        int states = 1;
+        for (final String substring : substrings) {
+            int state = ROOT;
+            for (int i = 0; i < substring.length(); i++) {
+                final char c = substring.charAt(i);
+                if (c < 0x80) {
+                    final int index = state * width + classes[c];
+                    if (trie[index] == ROOT) {
+                        trie[index] = states++;
+                    }
+                    state = trie[index];
+                } else {
+                    final Integer next = edges.get(key(state, c));
+                    if (next == null) {
+                        edges.put(key(state, c), states);
+                        state = states++;
+                    } else {
+                        state = next;
+                    }
+                }
+            }
+            ends[state] = true;
+        }
+        edgeKeys = edges.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        edgeTargets = new int[edgeKeys.length];
+        for (int i = 0; i < edgeKeys.length; i++) {
+            edgeTargets[i] = edges.get(edgeKeys[i]);
+        }
+        failures = new int[states];
+        accepting = Arrays.copyOf(ends, states);
+        link(trie);
+        transitions = Arrays.copyOf(trie, states * width);
+    }
+
+    private static long key(final int state, final char c) {
+        return (long) state << Character.SIZE | c;
+    }
+
+    /**
+     * Turns trie into automaton in breadth-first order, so the failure state of every state is completed before it.
+     * Missing trie edges by ASCII characters are {@link #ROOT}, as no edge leads to the root.
+     */
+    private void link(final int[] trie) {
+        final Queue<Integer> queue = new ArrayDeque<>();
+        queue.add(ROOT);
+        while (!queue.isEmpty()) {
+            final int state = queue.remove();
+            final int failure = failures[state];
+            for (int c = 1; c < width; c++) {
+                final int index = state * width + c;
+                final int fallback = state == ROOT ? ROOT : trie[failure * width + c];
+                final int child = trie[index];
+                if (child == ROOT) {
+                    trie[index] = fallback;
+                } else {
+                    addChild(child, fallback, queue);
+                }
+            }
+            // No edge is keyed by character 0, so the search returns the insertion point of the first edge
+            for (int i = -Arrays.binarySearch(edgeKeys, key(state, (char) 0)) - 1;
+                 i < edgeKeys.length && edgeKeys[i] >>> Character.SIZE == state; i++) {
+                final char c = (char) edgeKeys[i];
+                addChild(edgeTargets[i], state == ROOT ? ROOT : next(failure, c), queue);
+            }
+        }
+    }
+
+    private void addChild(final int child, final int failure, final Queue<Integer> queue) {
+        failures[child] = failure;
+        accepting[child] |= accepting[failure];
+        queue.add(child);
+    }
+
+    /**
+     * Returns transition by non-ASCII character.
+     */
+    private int next(int state, final char c) {
+        while (true) {
+            final int index = Arrays.binarySearch(edgeKeys, key(state, c));
+            if (index >= 0) {
+                return edgeTargets[index];
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = failures[state];
+        }
+    }
+
+    /**
+     * Returns {@code true} if the string contains one of the substrings.
+     *
+     * @param string string to check.
+     * @return whether one of the substrings occurs in the string.
+     */
+    boolean matches(final String string) {
+        if (matchesAll || accepting.length == 1) {
+            return matchesAll;
+        }
+        int state = ROOT;
+        for (int i = 0; i < string.length(); i++) {
+            final char c = string.charAt(i);
+            state = c < 0x80 ? transitions[state * width + classes[c]] : next(state, c);
+            if (accepting[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
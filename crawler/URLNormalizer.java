@@ -0,0 +1,386 @@
+package crawler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rewrites equivalent URLs into the same canonical form, so they are downloaded only once.
+ * Applies steps of <a href="https://datatracker.ietf.org/doc/html/rfc3986#section-6">RFC 3986 normalization</a>
+ * selected by {@link Builder}. URLs without scheme are returned unchanged.
+ * Normalization scans the URL once per step and uses no regular expressions.
+ * This class is immutable and thread-safe.
+ *
+ * @author Bogdan Nikitin
+ */
+public final class URLNormalizer {
+    private static final String HEX_DIGITS = "0123456789ABCDEF";
+
+    private final boolean lowerCase;
+    private final boolean removeDefaultPort;
+    private final boolean removeFragment;
+    private final boolean normalizePercentEncoding;
+    private final boolean removeDotSegments;
+    private final boolean sortQuery;
+    private final Set<String> removedQueryParameters;
+
+    private URLNormalizer(final Builder builder) {
+        this.lowerCase = builder.lowerCase;
+        this.removeDefaultPort = builder.removeDefaultPort;
+        this.removeFragment = builder.removeFragment;
+        this.normalizePercentEncoding = builder.normalizePercentEncoding;
+        this.removeDotSegments = builder.removeDotSegments;
+        this.sortQuery = builder.sortQuery;
+        this.removedQueryParameters = builder.removedQueryParameters;
+    }
+
+    /**
+     * Creates builder of normalizer.
+     * By default every step not changing meaning of URL is enabled, query is left as is.
+     *
+     * @return new builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns canonical form of the URL.
+     *
+     * @param url URL to normalize.
+     * @return normalized URL.
+     */
+    public String normalize(final String url) {
+        final int schemeEnd = schemeEnd(url);
+        if (schemeEnd < 0) {
+            return url;
+        }
+        final int fragment = url.indexOf('#', schemeEnd);
+        final int end = fragment < 0 ? url.length() : fragment;
+        final int query = url.indexOf('?', schemeEnd);
+        final int pathEnd = query >= 0 && query < end ? query : end;
+
+        final StringBuilder result = new StringBuilder(url.length());
+        appendCase(result, url, 0, schemeEnd);
+        result.append(':');
+        int pathStart = schemeEnd + 1;
+        if (url.startsWith("//", pathStart) && pathStart + 2 <= pathEnd) {
+            final int authorityEnd = indexOf(url, '/', pathStart + 2, pathEnd);
+            appendAuthority(result, url, schemeEnd, pathStart + 2, authorityEnd);
+            pathStart = authorityEnd;
+            if (removeDotSegments && pathStart == pathEnd) {
+                result.append('/');
+            }
+        }
+        if (removeDotSegments && pathStart < pathEnd && url.charAt(pathStart) == '/') {
+            removeDotSegments(appendPercentEncoded(new StringBuilder(), url, pathStart, pathEnd), result);
+        } else {
+            appendPercentEncoded(result, url, pathStart, pathEnd);
+        }
+        if (pathEnd < end) {
+            appendQuery(result, url, pathEnd + 1, end);
+        }
+        if (fragment >= 0 && !removeFragment) {
+            result.append('#');
+            appendPercentEncoded(result, url, fragment + 1, url.length());
+        }
+        return result.length() == url.length() && url.contentEquals(result) ? url : result.toString();
+    }
+
+    private static int schemeEnd(final String url) {
+        for (int i = 0; i < url.length(); i++) {
+            final char c = url.charAt(i);
+            if (c == ':') {
+                return i > 0 ? i : -1;
+            }
+            if (!('a' <= c && c <= 'z' || 'A' <= c && c <= 'Z'
+                    || i > 0 && ('0' <= c && c <= '9' || c == '+' || c == '-' || c == '.'))) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(final String url, final char c, final int start, final int end) {
+        final int index = url.indexOf(c, start);
+        return index >= 0 && index < end ? index : end;
+    }
+
+    private void appendAuthority(
+            final StringBuilder result,
+            final String url,
+            final int schemeEnd,
+            final int start,
+            final int end
+    ) {
+        result.append("//");
+        final int at = url.lastIndexOf('@', end - 1);
+        final int hostStart = at >= start ? at + 1 : start;
+        result.append(url, start, hostStart);
+        final int bracket = url.lastIndexOf(']', end - 1);
+        int colon = url.lastIndexOf(':', end - 1);
+        if (colon < hostStart || colon < bracket) {
+            colon = end;
+        }
+        appendCase(result, url, hostStart, colon);
+        if (colon + 1 < end && !(removeDefaultPort && isDefaultPort(url, schemeEnd, colon + 1, end))) {
+            result.append(url, colon, end);
+        } else if (colon + 1 == end && !removeDefaultPort) {
+            result.append(':');
+        }
+    }
+
+    private static boolean isDefaultPort(final String url, final int schemeEnd, final int start, final int end) {
+        int port = 0;
+        for (int i = start; i < end; i++) {
+            final char c = url.charAt(i);
+            if (c < '0' || c > '9' || port > 0xFFFF) {
+                return false;
+            }
+            port = port * 10 + c - '0';
+        }
+        return port == defaultPort(url, schemeEnd);
+    }
+
+    private static int defaultPort(final String url, final int schemeEnd) {
+        if (isScheme(url, schemeEnd, "http")) {
+            return 80;
+        } else if (isScheme(url, schemeEnd, "https")) {
+            return 443;
+        } else if (isScheme(url, schemeEnd, "ftp")) {
+            return 21;
+        }
+        return -1;
+    }
+
+    private static boolean isScheme(final String url, final int schemeEnd, final String scheme) {
+        return schemeEnd == scheme.length() && url.regionMatches(true, 0, scheme, 0, schemeEnd);
+    }
+
+    private void appendCase(final StringBuilder result, final String url, final int start, final int end) {
+        if (!lowerCase) {
+            result.append(url, start, end);
+            return;
+        }
+        int run = start;
+        for (int i = start; i < end; i++) {
+            final char c = url.charAt(i);
+            final char lower = Character.toLowerCase(c);
+            if (lower != c) {
+                result.append(url, run, i).append(lower);
+                run = i + 1;
+            }
+        }
+        result.append(url, run, end);
+    }
+
+    /**
+     * Appends part of URL, upper-casing hex digits of percent-encoded octets
+     * and decoding octets of unreserved characters.
+     */
+    private StringBuilder appendPercentEncoded(
+            final StringBuilder result,
+            final CharSequence url,
+            final int start,
+            final int end
+    ) {
+        if (!normalizePercentEncoding) {
+            return result.append(url, start, end);
+        }
+        int run = start;
+        for (int i = start; i + 2 < end; i++) {
+            if (url.charAt(i) != '%') {
+                continue;
+            }
+            final int high = hexDigit(url.charAt(i + 1));
+            final int low = hexDigit(url.charAt(i + 2));
+            if (high < 0 || low < 0) {
+                continue;
+            }
+            result.append(url, run, i);
+            final char decoded = (char) (high << 4 | low);
+            if (isUnreserved(decoded)) {
+                result.append(decoded);
+            } else {
+                result.append('%').append(HEX_DIGITS.charAt(high)).append(HEX_DIGITS.charAt(low));
+            }
+            i += 2;
+            run = i + 1;
+        }
+        return result.append(url, run, end);
+    }
+
+    private static int hexDigit(final char c) {
+        return c < 0x80 ? Character.digit(c, 16) : -1;
+    }
+
+    private static boolean isUnreserved(final char c) {
+        return 'a' <= c && c <= 'z' || 'A' <= c && c <= 'Z' || '0' <= c && c <= '9'
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    /**
+     * Removes {@code .} and {@code ..} segments of absolute path as
+     * <a href="https://datatracker.ietf.org/doc/html/rfc3986#section-5.2.4">RFC 3986</a> does.
+     */
+    private static void removeDotSegments(final CharSequence path, final StringBuilder result) {
+        final int base = result.length();
+        int i = 0;
+        while (i < path.length()) {
+            int next = i + 1;
+            while (next < path.length() && path.charAt(next) != '/') {
+                next++;
+            }
+            final int length = next - i - 1;
+            final boolean last = next == path.length();
+            if (length == 1 && path.charAt(i + 1) == '.') {
+                if (last) {
+                    result.append('/');
+                }
+            } else if (length == 2 && path.charAt(i + 1) == '.' && path.charAt(i + 2) == '.') {
+                result.setLength(Math.max(base, result.lastIndexOf("/")));
+                if (last) {
+                    result.append('/');
+                }
+            } else {
+                result.append(path, i, next);
+            }
+            i = next;
+        }
+    }
+
+    private void appendQuery(final StringBuilder result, final String url, final int start, final int end) {
+        if (!sortQuery && removedQueryParameters.isEmpty()) {
+            result.append('?');
+            appendPercentEncoded(result, url, start, end);
+            return;
+        }
+        final List<String> parameters = new ArrayList<>();
+        for (int i = start; i <= end; ) {
+            final int next = indexOf(url, '&', i, end);
+            final String parameter = appendPercentEncoded(new StringBuilder(), url, i, next).toString();
+            if (!parameter.isEmpty() && !removedQueryParameters.contains(name(parameter))) {
+                parameters.add(parameter);
+            }
+            i = next + 1;
+        }
+        if (sortQuery) {
+            parameters.sort(Comparator.comparing(URLNormalizer::name));
+        }
+        for (int i = 0; i < parameters.size(); i++) {
+            result.append(i == 0 ? '?' : '&').append(parameters.get(i));
+        }
+    }
+
+    private static String name(final String parameter) {
+        final int equals = parameter.indexOf('=');
+        return equals < 0 ? parameter : parameter.substring(0, equals);
+    }
+
+    /**
+     * Builder of {@link URLNormalizer}.
+     */
+    public static final class Builder {
+        private boolean lowerCase = true;
+        private boolean removeDefaultPort = true;
+        private boolean removeFragment = true;
+        private boolean normalizePercentEncoding = true;
+        private boolean removeDotSegments = true;
+        private boolean sortQuery;
+        private Set<String> removedQueryParameters = Set.of();
+
+        private Builder() {
+        }
+
+        /**
+         * Sets whether scheme and host are lower-cased.
+         *
+         * @param lowerCase whether to lower-case scheme and host.
+         * @return this builder.
+         */
+        public Builder lowerCase(final boolean lowerCase) {
+            this.lowerCase = lowerCase;
+            return this;
+        }
+
+        /**
+         * Sets whether default port of HTTP, HTTPS and FTP and empty port are removed.
+         *
+         * @param removeDefaultPort whether to remove default port.
+         * @return this builder.
+         */
+        public Builder removeDefaultPort(final boolean removeDefaultPort) {
+            this.removeDefaultPort = removeDefaultPort;
+            return this;
+        }
+
+        /**
+         * Sets whether fragment is removed. Fragment is never sent to the server.
+         *
+         * @param removeFragment whether to remove fragment.
+         * @return this builder.
+         */
+        public Builder removeFragment(final boolean removeFragment) {
+            this.removeFragment = removeFragment;
+            return this;
+        }
+
+        /**
+         * Sets whether hex digits of percent-encoded octets are upper-cased
+         * and percent-encoded unreserved characters are decoded.
+         *
+         * @param normalizePercentEncoding whether to normalize percent-encoding.
+         * @return this builder.
+         */
+        public Builder normalizePercentEncoding(final boolean normalizePercentEncoding) {
+            this.normalizePercentEncoding = normalizePercentEncoding;
+            return this;
+        }
+
+        /**
+         * Sets whether {@code .} and {@code ..} path segments are removed and empty path is replaced with {@code /}.
+         *
+         * @param removeDotSegments whether to remove dot segments.
+         * @return this builder.
+         */
+        public Builder removeDotSegments(final boolean removeDotSegments) {
+            this.removeDotSegments = removeDotSegments;
+            return this;
+        }
+
+        /**
+         * Sets whether query parameters are stably sorted by name.
+         * Servers may depend on the order of parameters, so this is disabled by default.
+         *
+         * @param sortQuery whether to sort query parameters.
+         * @return this builder.
+         */
+        public Builder sortQuery(final boolean sortQuery) {
+            this.sortQuery = sortQuery;
+            return this;
+        }
+
+        /**
+         * Sets names of query parameters to remove, such as tracking parameters.
+         * Query left without parameters is removed.
+         *
+         * @param names names of parameters to remove.
+         * @return this builder.
+         */
+        public Builder removeQueryParameters(final Collection<String> names) {
+            this.removedQueryParameters = Set.copyOf(names);
+            return this;
+        }
+
+        /**
+         * Creates normalizer.
+         *
+         * @return new normalizer.
+         */
+        public URLNormalizer build() {
+            return new URLNormalizer(this);
+        }
+    }
+}
@@ -1,12 +1,92 @@
 package crawler;
 
+import java.net.IDN;
 import java.net.MalformedURLException;
+import java.util.Arrays;
+import java.util.Locale;
 
 public final class URLUtils {
+    private static final String[] HIERARCHICAL_PROTOCOLS = {"http", "https", "ftp", "file", "jrt"};
+    /** Characters {@link java.net.URL} rejects in host names besides ASCII ones. */
+    private static final char[] ILLEGAL_HOST_CHARS = {
+            8263, 8264, 8265, 8448, 8449, 8453, 8454, 10868,
+            65109, 65110, 65119, 65131, 65283, 65295, 65306, 65311, 65312
+    };
+    /** Flags of URL parts each ASCII character is illegal in. Controls are illegal everywhere. */
+    private static final byte[] ILLEGAL_ASCII = new byte[0x80];
+    private static final byte HOST = 1;
+    private static final byte SCOPE = 2;
+    private static final byte USER_INFO = 4;
+    private static final byte AUTHORITY = 8;
+    private static final int IPV6_BYTES = 16;
+    private static final int IPV4_BYTES = 4;
+
+    /** Factory returning host names as strings. */
+    private static final HostFactory<String> STRINGS = new HostFactory<>() {
+        @Override
+        public String region(final String url, final int start, final int end, final int hash) {
+            return url.substring(start, end);
+        }
+
+        @Override
+        public String name(final String host) {
+            return host;
+        }
+    };
+
     private URLUtils() {}
 
+    /**
+     * Factory of values representing hosts found by {@link #getHost(String, HostFactory)}.
+     *
+     * @param <T> type of the values.
+     */
+    interface HostFactory<T> {
+        /**
+         * Returns value of the host that is a region of the URL in its canonical form.
+         *
+         * @param url   URL.
+         * @param start index of the first host character.
+         * @param end   index after the last host character.
+         * @param hash  {@link String#hashCode()} of the host.
+         * @return value of the host.
+         */
+        T region(String url, int start, int end, int hash);
+
+        /**
+         * Returns value of the host that differs from its form in the URL.
+         *
+         * @param host host name in canonical form.
+         * @return value of the host.
+         */
+        T name(String host);
+    }
+
+    static {
+        Arrays.fill(ILLEGAL_ASCII, 0, ' ', (byte) (HOST | SCOPE | USER_INFO | AUTHORITY));
+        ILLEGAL_ASCII[0x7F] = HOST | SCOPE | USER_INFO | AUTHORITY;
+        markIllegal(" \"#/:<>?@[\\]^`{|}", HOST);
+        markIllegal("#/?[\\]", SCOPE);
+        markIllegal("#/?@[\\]", USER_INFO);
+        markIllegal("\\", AUTHORITY);
+    }
+
+    private static void markIllegal(final String chars, final byte part) {
+        for (int i = 0; i < chars.length(); i++) {
+            ILLEGAL_ASCII[chars.charAt(i)] |= part;
+        }
+    }
+
+    private static boolean isIllegal(final char c, final byte part) {
+        return c < 0x80 && (ILLEGAL_ASCII[c] & part) != 0;
+    }
+
     /**
      * Returns host part of the specified URL.
+     * Host is lower-cased, internationalized host names are converted to ASCII form,
+     * IPv6 address is returned in brackets.
+     * URL is rejected exactly where {@link java.net.URL} with default protocol handlers would reject it.
+     * Apart from the returned string, no objects are allocated for valid URLs with ASCII hosts.
      *
      * @param url url to get host part for.
      *
@@ -15,6 +95,358 @@ public final class URLUtils {
      * @throws MalformedURLException if specified URL is invalid.
      */
     public static String getHost(final String url) throws MalformedURLException {
-        throw new UnsupportedOperationException("Provide implementation");
+        return getHost(url, STRINGS);
+    }
+
+    /**
+     * Returns value of the host part of the specified URL, as {@link #getHost(String)} does.
+     * Lower-case ASCII host names and IPv6 addresses are passed to the factory as regions of the URL,
+     * so no objects are allocated for them apart from those allocated by the factory.
+     *
+     * @param url   url to get host part for.
+     * @param hosts factory of host values.
+     * @param <T>   type of host values.
+     * @return value of the host part, value of empty string if URL has no host part.
+     * @throws MalformedURLException if specified URL is invalid.
+     */
+    static <T> T getHost(final String url, final HostFactory<T> hosts) throws MalformedURLException {
+        int start = 0;
+        int limit = url.length();
+        while (limit > 0 && url.charAt(limit - 1) <= ' ') {
+            limit--;
+        }
+        while (start < limit && url.charAt(start) <= ' ') {
+            start++;
+        }
+        if (url.regionMatches(true, start, "url:", 0, 4)) {
+            start += 4;
+        }
+
+        final int protocolEnd = protocolEnd(url, start, limit);
+        if (protocolEnd < 0) {
+            throw new MalformedURLException("no protocol: " + url);
+        }
+        final int protocolLength = protocolEnd - start;
+        final int fragment = url.indexOf('#', protocolEnd);
+        if (fragment >= 0 && fragment < limit) {
+            limit = fragment;
+        }
+        if (isProtocol(url, start, protocolLength, "jar")) {
+            checkJar(url, start, protocolEnd + 1, limit);
+            return hosts.name("");
+        }
+        if (isProtocol(url, start, protocolLength, "mailto")) {
+            if (url.substring(protocolEnd + 1, limit).isBlank()) {
+                throw new MalformedURLException("No email address");
+            }
+            return hosts.name("");
+        }
+        if (!isHierarchical(url, start, protocolLength)) {
+            throw new MalformedURLException("unknown protocol: "
+                    + url.substring(start, protocolEnd).toLowerCase(Locale.ROOT));
+        }
+        return hierarchicalHost(url, protocolEnd + 1, limit, hosts);
+    }
+
+    /**
+     * Returns index of the colon ending valid protocol or {@code -1}.
+     */
+    private static int protocolEnd(final String url, final int start, final int limit) {
+        for (int i = start; i < limit; i++) {
+            final char c = url.charAt(i);
+            if (c == ':') {
+                return i > start ? i : -1;
+            }
+            if (!(isAsciiLetter(c) || i > start && (isDigit(c) || c == '+' || c == '-' || c == '.'))) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isProtocol(final String url, final int start, final int length, final String protocol) {
+        return length == protocol.length() && url.regionMatches(true, start, protocol, 0, length);
+    }
+
+    private static boolean isHierarchical(final String url, final int start, final int length) {
+        for (final String protocol : HIERARCHICAL_PROTOCOLS) {
+            if (isProtocol(url, start, length, protocol)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Jar URL must be absolute, contain {@code !/} and wrap valid URL of another protocol.
+     */
+    private static void checkJar(final String url, final int start, final int specStart, final int limit)
+            throws MalformedURLException {
+        if (start != 0) {
+            // Relative jar URL without context is only accepted when it is a bare fragment
+            if (specStart < url.length() && url.charAt(specStart) == '#') {
+                return;
+            }
+            throw new MalformedURLException("malformed context url:" + url);
+        }
+        if (url.regionMatches(true, specStart, "jar:", 0, 4)) {
+            throw new MalformedURLException("Nested JAR URLs are not supported");
+        }
+        final int bangSlash = url.lastIndexOf("!/", limit - 2);
+        if (bangSlash < specStart) {
+            throw new MalformedURLException("no !/ in spec");
+        }
+        getHost(url.substring(specStart, bangSlash));
+    }
+
+    private static <T> T hierarchicalHost(final String url, int start, int limit, final HostFactory<T> hosts)
+            throws MalformedURLException {
+        final int query = url.indexOf('?', start);
+        if (query >= 0 && query < limit) {
+            limit = query;
+        }
+        if (!url.startsWith("//", start) || start + 2 > limit || url.startsWith("////", start) && start + 4 <= limit) {
+            return hosts.name("");
+        }
+        start += 2;
+        final int slash = url.indexOf('/', start);
+        final int end = slash >= 0 && slash <= limit ? slash : limit;
+        // Characters illegal in authority are illegal in every its part, so it is checked separately only when unparsed
+        final int at = url.indexOf('@', start);
+        if (at >= 0 && at < end) {
+            final int nextAt = url.indexOf('@', at + 1);
+            if (nextAt >= 0 && nextAt < end) {
+                checkChars(url, start, end, AUTHORITY, "authority");
+                return hosts.name("");
+            }
+            checkChars(url, start, at, USER_INFO, "user-info");
+            start = at + 1;
+        }
+        return start < end && url.charAt(start) == '['
+                ? ipv6Host(url, start, end, hosts)
+                : namedHost(url, start, end, hosts);
+    }
+
+    private static <T> T namedHost(final String url, final int start, final int end, final HostFactory<T> hosts)
+            throws MalformedURLException {
+        int hostEnd = end;
+        final int colon = url.indexOf(':', start);
+        if (colon >= 0 && colon < end) {
+            checkPort(url, colon + 1, end);
+            hostEnd = colon;
+        }
+        boolean lowerAscii = true;
+        int hash = 0;
+        for (int i = start; i < hostEnd; i++) {
+            final char c = url.charAt(i);
+            hash = 31 * hash + c;
+            if (c < 0x80) {
+                if (isIllegal(c, HOST)) {
+                    throw illegalCharacter(c, "host");
+                }
+                if ('A' <= c && c <= 'Z') {
+                    lowerAscii = false;
+                }
+            } else {
+                if (Arrays.binarySearch(ILLEGAL_HOST_CHARS, c) >= 0) {
+                    throw illegalCharacter(c, "host");
+                }
+                lowerAscii = false;
+            }
+        }
+        return lowerAscii
+                ? hosts.region(url, start, hostEnd, hash)
+                : hosts.name(toAsciiLowerCase(url.substring(start, hostEnd)));
+    }
+
+    private static String toAsciiLowerCase(final String host) {
+        for (int i = 0; i < host.length(); i++) {
+            if (host.charAt(i) >= 0x80) {
+                try {
+                    return IDN.toASCII(host, IDN.ALLOW_UNASSIGNED).toLowerCase(Locale.ROOT);
+                } catch (final IllegalArgumentException e) {
+                    // java.net.URL accepts such hosts, so do not reject them either
+                    return host.toLowerCase(Locale.ROOT);
+                }
+            }
+        }
+        return host.toLowerCase(Locale.ROOT);
+    }
+
+    private static <T> T ipv6Host(final String url, final int start, final int end, final HostFactory<T> hosts)
+            throws MalformedURLException {
+        final int close = url.indexOf(']', start);
+        if (close < 0 || close >= end || close <= start + 2) {
+            throw new MalformedURLException("Invalid authority field: " + url.substring(start, end));
+        }
+        if (!isIPv6(url, start + 1, close)) {
+            throw new MalformedURLException("Invalid host: " + url.substring(start, close + 1));
+        }
+        if (close + 1 < end) {
+            if (url.charAt(close + 1) != ':') {
+                throw new MalformedURLException("Invalid authority field: " + url.substring(start, end));
+            }
+            checkPort(url, close + 2, end);
+        }
+        final int zone = url.indexOf('%', start);
+        if (zone >= 0 && zone < close) {
+            checkChars(url, zone, close, SCOPE, "IPv6 scoped address");
+        }
+        int hash = '[';
+        for (int i = start + 1; i < close; i++) {
+            final char c = url.charAt(i);
+            if ('A' <= c && c <= 'Z' || c >= 0x80) {
+                return hosts.name(url.substring(start, close + 1).toLowerCase(Locale.ROOT));
+            }
+            hash = 31 * hash + c;
+        }
+        return hosts.region(url, start, close + 1, 31 * hash + ']');
+    }
+
+    /**
+     * Checks textual IPv6 address with optional trailing IPv4 part and optional zone
+     * the same way {@link java.net.URL} does.
+     */
+    private static boolean isIPv6(final String url, final int start, final int end) {
+        if (end - start < 2) {
+            return false;
+        }
+        int limit = end;
+        final int zone = url.indexOf('%', start);
+        if (zone >= 0 && zone < end) {
+            if (zone == end - 1) {
+                return false;
+            }
+            limit = zone;
+        }
+        int i = start;
+        if (url.charAt(i) == ':' && url.charAt(++i) != ':') {
+            return false;
+        }
+        int token = i;
+        int bytes = 0;
+        int compressed = -1;
+        boolean sawDigit = false;
+        int value = 0;
+        while (i < limit) {
+            final char c = url.charAt(i++);
+            final int digit = Character.digit(c, 16);
+            if (digit >= 0 && c < 0x80) {
+                value = value << 4 | digit;
+                if (value > 0xFFFF) {
+                    return false;
+                }
+                sawDigit = true;
+            } else if (c == ':') {
+                token = i;
+                if (!sawDigit) {
+                    if (compressed >= 0) {
+                        return false;
+                    }
+                    compressed = bytes;
+                    continue;
+                }
+                if (i == limit || bytes + 2 > IPV6_BYTES) {
+                    return false;
+                }
+                bytes += 2;
+                sawDigit = false;
+                value = 0;
+            } else if (c == '.' && bytes + IPV4_BYTES <= IPV6_BYTES) {
+                if (!isIPv4(url, token, limit)) {
+                    return false;
+                }
+                bytes += IPV4_BYTES;
+                sawDigit = false;
+                break;
+            } else {
+                return false;
+            }
+        }
+        if (sawDigit) {
+            if (bytes + 2 > IPV6_BYTES) {
+                return false;
+            }
+            bytes += 2;
+        }
+        if (compressed >= 0) {
+            return bytes != IPV6_BYTES;
+        }
+        return bytes == IPV6_BYTES;
+    }
+
+    /**
+     * Checks dotted-quad IPv4 address.
+     */
+    private static boolean isIPv4(final String url, final int start, final int end) {
+        if (end - start > 15) {
+            return false;
+        }
+        int parts = 0;
+        int value = 0;
+        boolean newPart = true;
+        for (int i = start; i < end; i++) {
+            final char c = url.charAt(i);
+            if (c == '.') {
+                if (newPart || value > 0xFF || parts == IPV4_BYTES - 1) {
+                    return false;
+                }
+                parts++;
+                value = 0;
+                newPart = true;
+            } else if (isDigit(c)) {
+                value = value * 10 + c - '0';
+                newPart = false;
+            } else {
+                return false;
+            }
+        }
+        return parts == IPV4_BYTES - 1 && !newPart && value <= 0xFF;
+    }
+
+    /**
+     * Checks port the same way as {@link Integer#parseInt(CharSequence, int, int, int)} followed by range check.
+     */
+    private static void checkPort(final String url, final int start, final int end) throws MalformedURLException {
+        if (start == end) {
+            return;
+        }
+        final boolean negative = url.charAt(start) == '-';
+        int i = negative || url.charAt(start) == '+' ? start + 1 : start;
+        if (i == end) {
+            throw new MalformedURLException("For input string: \"" + url.substring(start, end) + "\"");
+        }
+        long port = 0;
+        for (; i < end; i++) {
+            final int digit = Character.digit(url.charAt(i), 10);
+            if (digit < 0 || (port = port * 10 + digit) > Integer.MAX_VALUE + 1L) {
+                throw new MalformedURLException("For input string: \"" + url.substring(start, end) + "\"");
+            }
+        }
+        if (negative ? port > 1 : port > Integer.MAX_VALUE) {
+            throw new MalformedURLException("Invalid port number :" + url.substring(start, end));
+        }
+    }
+
+    private static void checkChars(final String url, final int start, final int end, final byte illegal, final String part)
+            throws MalformedURLException {
+        for (int i = start; i < end; i++) {
+            final char c = url.charAt(i);
+            if (isIllegal(c, illegal)) {
+                throw illegalCharacter(c, part);
+            }
+        }
+    }
+
+    private static MalformedURLException illegalCharacter(final char c, final String part) {
+        return new MalformedURLException("Illegal character found in " + part + ": '" + c + "'");
+    }
+
+    private static boolean isAsciiLetter(final char c) {
+        return 'a' <= c && c <= 'z' || 'A' <= c && c <= 'Z';
+    }
+
+    private static boolean isDigit(final char c) {
+        return '0' <= c && c <= '9';
     }
 }
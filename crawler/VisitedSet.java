@@ -0,0 +1,23 @@
+package crawler;
+
+/**
+ * Set of URLs visited by a single crawl together with remaining depth they were visited with.
+ * Implementations must be thread-safe.
+ *
+ * @author Bogdan Nikitin
+ */
+public interface VisitedSet {
+    /**
+     * Value returned by {@link #add(String, int)} for URL that was not visited before.
+     */
+    int NOT_VISITED = -1;
+
+    /**
+     * Atomically marks URL visited and raises its recorded remaining depth to at least the given one.
+     *
+     * @param url   visited URL.
+     * @param depth remaining depth URL is visited with, non-negative.
+     * @return previously recorded remaining depth or {@link #NOT_VISITED}.
+     */
+    int add(String url, int depth);
+}
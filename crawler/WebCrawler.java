@@ -1,9 +1,19 @@
 package crawler;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 /**
  * Crawls websites in parallel.
@@ -13,12 +23,39 @@ import java.util.concurrent.*;
  * @author Bogdan Nikitin
  */
 public class WebCrawler {
-    private final BoundedExecutor<String> downloadExecutor;
+    private static final int HOST_TABLE_CAPACITY = 4096;
+    /** Max number of URLs of a level downloaded or extracted at once, bounded by the max number of phaser parties. */
+    private static final int MAX_IN_FLIGHT = (1 << 16) - 2;
+    /**
+     * Number of URLs of a prioritized level in flight per downloader. Bounded window keeps URLs in the frontier,
+     * where they are ordered by priority, instead of the queues of hosts, where they are ordered per host.
+     */
+    private static final int PRIORITY_WINDOW = 4;
+    /** Number of hosts reported in progress of a crawl. */
+    private static final int BUSIEST_HOSTS = 10;
+
+    private final BoundedExecutor<HostId> downloadExecutor;
     private final ExecutorService extractExecutor;
+    /** Runs downloads with timeout, so timed out ones can be abandoned, {@code null} if there is no timeout. */
+    private final ExecutorService timedDownloads;
+    private final Duration downloadTimeout;
     private final Downloader downloader;
+    private final CrawlMode mode;
+    private final Semaphore downloadPermits;
+    private final Supplier<? extends VisitedSet> visitedSets;
+    private final URLNormalizer normalizer;
+    private final HostTable hosts = new HostTable(HOST_TABLE_CAPACITY);
+    private final Path spillDirectory;
+    private final int frontierLimit;
+    private final CrawlMetrics metrics;
+    private final CrawlBudget budget;
+    private final ToIntFunction<String> priority;
+    private final int priorityLevels;
+    /** Max number of URLs of a level downloaded or extracted at once. */
+    private final int inFlight;
 
     /**
-     * Creates {@code WebCrawler} and starts pools of workers.
+     * Creates {@code WebCrawler} working in {@link CrawlMode#LEVEL} mode and starts pools of workers.
      *
      * @param downloader  downloader used to download sites.
      * @param downloaders max amount of downloading workers.
@@ -26,9 +63,76 @@ public class WebCrawler {
      * @param perHost     max amount of sites downloaded from same host.
      */
     public WebCrawler(final Downloader downloader, final int downloaders, final int extractors, final int perHost) {
-        this.downloader = downloader;
-        this.downloadExecutor = new BoundedExecutor<>(Executors.newFixedThreadPool(downloaders), perHost);
-        this.extractExecutor = Executors.newFixedThreadPool(extractors);
+        this(downloader, downloaders, extractors, perHost, CrawlMode.LEVEL);
+    }
+
+    /**
+     * Creates {@code WebCrawler} and starts pools of workers.
+     *
+     * @param downloader  downloader used to download sites.
+     * @param downloaders max amount of downloading workers.
+     * @param extractors  max amount of extracting workers.
+     * @param perHost     max amount of sites downloaded from same host.
+     * @param mode        crawl strategy.
+     */
+    public WebCrawler(
+            final Downloader downloader,
+            final int downloaders,
+            final int extractors,
+            final int perHost,
+            final CrawlMode mode
+    ) {
+        this(builder(downloader).downloaders(downloaders).extractors(extractors).perHost(perHost).mode(mode));
+    }
+
+    private WebCrawler(final Builder builder) {
+        this.downloader = builder.downloader;
+        this.mode = builder.mode;
+        this.visitedSets = builder.visitedSets;
+        this.normalizer = builder.normalizer;
+        this.spillDirectory = builder.spillDirectory;
+        this.frontierLimit = builder.frontierLimit;
+        this.metrics = builder.metrics;
+        this.budget = builder.budget;
+        this.priority = builder.priority;
+        this.priorityLevels = builder.priorityLevels;
+        this.inFlight = (int) Math.min(
+                builder.frontierLimit,
+                builder.priority == null ? MAX_IN_FLIGHT : Math.min((long) PRIORITY_WINDOW * builder.downloaders, MAX_IN_FLIGHT)
+        );
+        final Function<String, RateLimit> rateLimits = builder.rateLimits;
+        final Function<HostId, RateLimit> hostLimits = rateLimits == null ? null : host -> rateLimits.apply(host.name());
+        final ExecutorService downloaders;
+        if (builder.virtualThreads) {
+            this.downloadPermits = new Semaphore(builder.downloaders);
+            downloaders = Executors.newVirtualThreadPerTaskExecutor();
+        } else {
+            this.downloadPermits = null;
+            downloaders = Executors.newFixedThreadPool(builder.downloaders);
+        }
+        final CrawlMetrics metrics = builder.metrics;
+        this.downloadExecutor = new BoundedExecutor<>(
+                downloaders,
+                builder.perHost,
+                builder.adaptivePerHost,
+                hostLimits,
+                metrics == null ? null : host -> metrics.onDeferred(host.name())
+        );
+        this.extractExecutor = Executors.newFixedThreadPool(builder.extractors);
+        this.downloadTimeout = builder.downloadTimeout;
+        this.timedDownloads = downloadTimeout == null ? null : Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Creates builder of {@code WebCrawler}.
+     * By default crawler uses single downloader, single extractor, single download per host,
+     * {@link CrawlMode#LEVEL} mode, platform threads and {@link HashVisitedSet} and does not normalize URLs.
+     *
+     * @param downloader downloader used to download sites.
+     * @return new builder.
+     */
+    public static Builder builder(final Downloader downloader) {
+        return new Builder(downloader);
     }
 
     /**
@@ -40,7 +144,7 @@ public class WebCrawler {
      * @return download result.
      */
     public Result download(final String url, final int depth, final Set<String> excludes) {
-        return new DownloadRunner(excludes).download(url, depth);
+        return downloadAsync(url, depth, excludes).join();
     }
 
     /**
@@ -54,8 +158,244 @@ public class WebCrawler {
         return download(url, depth, Collections.emptySet());
     }
 
+    /**
+     * Starts downloading website up to specified depth without blocking the calling thread.
+     * Cancelling the returned future stops scheduling of new downloads and extractions of this crawl,
+     * tasks already running are not interrupted.
+     *
+     * @param url      start URL.
+     * @param depth    download depth.
+     * @param excludes URLs containing one of given substrings are ignored.
+     * @return future completed with download result.
+     */
+    public CompletableFuture<Result> downloadAsync(final String url, final int depth, final Set<String> excludes) {
+        return crawl(url, depth, excludes).future();
+    }
+
+    /**
+     * Starts downloading website up to specified depth without blocking the calling thread,
+     * returning handle to watch progress of the crawl.
+     *
+     * @param url      start URL.
+     * @param depth    download depth.
+     * @param excludes URLs containing one of given substrings are ignored.
+     * @return handle of the crawl completed with download result.
+     * @see #downloadAsync(String, int, Set)
+     */
+    public Crawl<Result> crawl(final String url, final int depth, final Set<String> excludes) {
+        final ResultCollector collector = new ResultCollector();
+        final Crawl<Void> crawl = crawl(url, depth, excludes, collector);
+        final CompletableFuture<Void> done = crawl.future();
+        final CompletableFuture<Result> result = done.thenApply(ignored -> collector.toResult());
+        result.whenComplete((ignored, e) -> done.cancel(false));
+        return new Crawl<>(result, crawl::progress);
+    }
+
+    /**
+     * Starts downloading website up to specified depth without blocking the calling thread,
+     * reporting pages to the given sink and returning handle to watch progress of the crawl.
+     *
+     * @param url      start URL.
+     * @param depth    download depth.
+     * @param excludes URLs containing one of given substrings are ignored.
+     * @param sink     receiver of crawling results.
+     * @return handle of the crawl completed when crawling is finished.
+     * @see #downloadAsync(String, int, Set, ResultSink)
+     */
+    public Crawl<Void> crawl(final String url, final int depth, final Set<String> excludes, final ResultSink sink) {
+        final DownloadRunner runner = createRunner(excludes, sink, null);
+        return new Crawl<>(runner.start(url, depth), runner::progress);
+    }
+
+    /**
+     * Starts downloading website up to specified depth without blocking the calling thread,
+     * reporting pages to the given sink as soon as they are processed.
+     * Cancelling the returned future stops scheduling of new downloads and extractions of this crawl,
+     * tasks already running are not interrupted.
+     *
+     * @param url      start URL.
+     * @param depth    download depth.
+     * @param excludes URLs containing one of given substrings are ignored.
+     * @param sink     receiver of crawling results.
+     * @return future completed when crawling is finished.
+     */
+    public CompletableFuture<Void> downloadAsync(
+            final String url,
+            final int depth,
+            final Set<String> excludes,
+            final ResultSink sink
+    ) {
+        return crawl(url, depth, excludes, sink).future();
+    }
+
+    /**
+     * Downloads website up to specified depth, logging progress to the checkpoint.
+     * If the checkpoint contains this crawl interrupted before, the crawl is resumed from it,
+     * and the result contains only pages processed after resuming.
+     *
+     * @param url        start URL.
+     * @param depth      download depth.
+     * @param excludes   URLs containing one of given substrings are ignored.
+     * @param checkpoint checkpoint of the crawl.
+     * @return download result.
+     * @throws IllegalArgumentException if the checkpoint contains another crawl.
+     * @throws IllegalStateException    if a crawl was already started with the checkpoint.
+     */
+    public Result download(final String url, final int depth, final Set<String> excludes, final Checkpoint checkpoint) {
+        final ResultCollector collector = new ResultCollector();
+        downloadAsync(url, depth, excludes, collector, checkpoint).join();
+        return collector.toResult();
+    }
+
+    /**
+     * Starts downloading website up to specified depth without blocking the calling thread,
+     * reporting pages to the given sink and logging progress to the checkpoint.
+     * If the checkpoint contains this crawl interrupted before, the crawl is resumed from it.
+     * Pages reported before the interruption are not reported again, unless their processing was not synced.
+     * Checkpoint of cancelled crawl can be resumed as well.
+     *
+     * @param url        start URL.
+     * @param depth      download depth.
+     * @param excludes   URLs containing one of given substrings are ignored.
+     * @param sink       receiver of crawling results.
+     * @param checkpoint checkpoint of the crawl.
+     * @return future completed when crawling is finished.
+     * @throws IllegalArgumentException if the checkpoint contains another crawl.
+     * @throws IllegalStateException    if a crawl was already started with the checkpoint.
+     */
+    public CompletableFuture<Void> downloadAsync(
+            final String url,
+            final int depth,
+            final Set<String> excludes,
+            final ResultSink sink,
+            final Checkpoint checkpoint
+    ) {
+        return createRunner(excludes, sink, Objects.requireNonNull(checkpoint)).start(url, depth);
+    }
+
+    /**
+     * Starts downloading website up to specified depth without blocking the calling thread.
+     *
+     * @param url   start URL.
+     * @param depth download depth.
+     * @return future completed with download result.
+     * @see #downloadAsync(String, int, Set)
+     */
+    public CompletableFuture<Result> downloadAsync(final String url, final int depth) {
+        return downloadAsync(url, depth, Collections.emptySet());
+    }
+
+    private String normalize(final String url) {
+        return normalizer == null ? url : normalizer.normalize(url);
+    }
+
+    private HostId getHost(final String url) throws MalformedURLException {
+        return URLUtils.getHost(url, hosts);
+    }
+
+    /**
+     * Downloads the page, measuring the download if metrics are collected.
+     * Download is timed after a download permit is acquired, as waiting for it is not latency of the host.
+     */
+    private Document fetch(final String url, final HostId host) throws IOException {
+        if (downloadPermits != null) {
+            downloadPermits.acquireUninterruptibly();
+        }
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final Document document = download(url);
+            failed = false;
+            return document;
+        } catch (final IOException e) {
+            // Failed host gets less concurrent downloads, if adaptive
+            downloadExecutor.reportFailure();
+            throw e;
+        } finally {
+            final long end = System.nanoTime();
+            downloadExecutor.reportDuration(start, end);
+            if (metrics != null) {
+                metrics.onDownloaded(host.name(), end - start, failed);
+            }
+            if (downloadPermits != null) {
+                downloadPermits.release();
+            }
+        }
+    }
+
+    /**
+     * Downloads the page, abandoning the download after the timeout, if any.
+     * Abandoned download is interrupted, but may still run, so the calling thread and the host slot are released.
+     */
+    private Document download(final String url) throws IOException {
+        if (timedDownloads == null) {
+            return downloader.download(url);
+        }
+        final Future<Document> call;
+        try {
+            call = timedDownloads.submit(() -> downloader.download(url));
+        } catch (final RejectedExecutionException e) {
+            throw new InterruptedIOException("Crawler is closed");
+        }
+        try {
+            return call.get(downloadTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (final TimeoutException e) {
+            call.cancel(true);
+            throw new DownloadTimeoutException(url, downloadTimeout);
+        } catch (final InterruptedException e) {
+            call.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download of " + url + " is interrupted");
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException exception) {
+                throw exception;
+            }
+            if (cause instanceof RuntimeException exception) {
+                throw exception;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Extracts links of the page, measuring the extraction if metrics are collected.
+     */
+    private List<String> extractLinks(final Document document) throws IOException {
+        if (metrics == null) {
+            return document.extractLinks();
+        }
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final List<String> links = document.extractLinks();
+            failed = false;
+            return links;
+        } finally {
+            metrics.onExtracted(System.nanoTime() - start, failed);
+        }
+    }
+
+    private void countBacklog(final HostId host, final int delta) {
+        if (metrics != null) {
+            metrics.onBacklog(host.name(), delta);
+        }
+    }
+
+    private DownloadRunner createRunner(final Set<String> excludes, final ResultSink sink, final Checkpoint checkpoint) {
+        return switch (mode) {
+            case LEVEL -> new LevelRunner(excludes, sink, checkpoint);
+            case PIPELINED -> new PipelinedRunner(excludes, sink, checkpoint);
+        };
+    }
+
     /**
      * Closes this crawler, freeing executors.
+     * Downloads already scheduled are finished within their host limits and no new ones are started,
+     * so running crawls complete.
      */
     public void close() {
         boolean wasInterrupted = Thread.interrupted();
@@ -71,96 +411,861 @@ public class WebCrawler {
                 wasInterrupted = true;
             }
         }
+        if (timedDownloads != null) {
+            // Workers waiting for downloads are terminated, so downloads still running are abandoned ones
+            timedDownloads.shutdownNow();
+        }
         if (wasInterrupted) {
             Thread.currentThread().interrupt();
         }
     }
 
-    private class DownloadRunner {
-        private final Set<String> excluded;
+    /**
+     * Builder of {@link WebCrawler}.
+     */
+    public static final class Builder {
+        private final Downloader downloader;
+        private int downloaders = 1;
+        private int extractors = 1;
+        private int perHost = 1;
+        private CrawlMode mode = CrawlMode.LEVEL;
+        private boolean virtualThreads;
+        private Supplier<? extends VisitedSet> visitedSets = HashVisitedSet::new;
+        private URLNormalizer normalizer;
+        private Path spillDirectory;
+        private int frontierLimit = Integer.MAX_VALUE;
+        private Function<String, RateLimit> rateLimits;
+        private AdaptiveLimit adaptivePerHost;
+        private CrawlMetrics metrics;
+        private CrawlBudget budget = CrawlBudget.unlimited();
+        private Duration downloadTimeout;
+        private ToIntFunction<String> priority;
+        private int priorityLevels = 1;
+
+        private Builder(final Downloader downloader) {
+            this.downloader = Objects.requireNonNull(downloader);
+        }
+
+        /**
+         * Sets max amount of concurrently running downloads.
+         *
+         * @param downloaders max amount of downloading workers, positive.
+         * @return this builder.
+         */
+        public Builder downloaders(final int downloaders) {
+            if (downloaders <= 0) {
+                throw new IllegalArgumentException("Number of downloaders must be positive: " + downloaders);
+            }
+            this.downloaders = downloaders;
+            return this;
+        }
+
+        /**
+         * Sets max amount of concurrently running extractions.
+         *
+         * @param extractors max amount of extracting workers, positive.
+         * @return this builder.
+         */
+        public Builder extractors(final int extractors) {
+            if (extractors <= 0) {
+                throw new IllegalArgumentException("Number of extractors must be positive: " + extractors);
+            }
+            this.extractors = extractors;
+            return this;
+        }
+
+        /**
+         * Sets max amount of concurrently running downloads from the same host.
+         *
+         * @param perHost max amount of sites downloaded from same host, positive.
+         * @return this builder.
+         */
+        public Builder perHost(final int perHost) {
+            if (perHost <= 0) {
+                throw new IllegalArgumentException("Number of downloads per host must be positive: " + perHost);
+            }
+            this.perHost = perHost;
+            return this;
+        }
+
+        /**
+         * Adapts max amount of concurrently running downloads from every host to the host health, replacing
+         * {@link #perHost(int)}. Hosts answering fast get more concurrent downloads, up to the max,
+         * while hosts failing downloads or slowing down under load get less, down to the min.
+         * Host forgets its adapted limit when it has no downloads.
+         *
+         * @param limit adaptive limit of every host or {@code null} to use fixed {@link #perHost(int)}.
+         * @return this builder.
+         */
+        public Builder adaptivePerHost(final AdaptiveLimit limit) {
+            this.adaptivePerHost = limit;
+            return this;
+        }
+
+        /**
+         * Sets crawl strategy.
+         *
+         * @param mode crawl strategy.
+         * @return this builder.
+         */
+        public Builder mode(final CrawlMode mode) {
+            this.mode = Objects.requireNonNull(mode);
+            return this;
+        }
+
+        /**
+         * Runs every download in its own virtual thread instead of a fixed pool of platform threads.
+         * Amount of concurrently running downloads is still bounded by {@link #downloaders(int)},
+         * so only threads blocked in {@link Downloader#download(String)} are cheaper.
+         *
+         * @param virtualThreads whether to use virtual threads for downloads.
+         * @return this builder.
+         */
+        public Builder virtualThreads(final boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * Sets factory of sets tracking visited URLs, called once per crawl.
+         * For example, {@link FingerprintVisitedSet} uses much less memory than default {@link HashVisitedSet}.
+         *
+         * @param visitedSets factory of visited sets.
+         * @return this builder.
+         */
+        public Builder visitedSet(final Supplier<? extends VisitedSet> visitedSets) {
+            this.visitedSets = Objects.requireNonNull(visitedSets);
+            return this;
+        }
+
+        /**
+         * Sets normalizer applied to every URL before it is checked against excludes and visited URLs.
+         * Pages are downloaded and reported by their normalized URLs.
+         * By default URLs are compared as is.
+         *
+         * @param normalizer URL normalizer or {@code null} to compare URLs as is.
+         * @return this builder.
+         */
+        public Builder normalizer(final URLNormalizer normalizer) {
+            this.normalizer = normalizer;
+            return this;
+        }
+
+        /**
+         * Limits rate of downloads from every host.
+         * Download started too early waits without occupying a downloading worker,
+         * so workers download from other hosts meanwhile.
+         * By default downloads are limited only by {@link #perHost(int)}.
+         *
+         * @param limit rate limit of every host or {@code null} to remove limits.
+         * @return this builder.
+         */
+        public Builder rateLimit(final RateLimit limit) {
+            this.rateLimits = limit == null ? null : host -> limit;
+            return this;
+        }
+
+        /**
+         * Limits rate of downloads from each host separately, for example, by {@code Crawl-delay} of its
+         * {@code robots.txt}. Function is called with the host name when a download from the host is scheduled
+         * after the host was idle, so it should be fast.
+         *
+         * @param rateLimits rate limit of the host, returns {@code null} if host is not limited.
+         * @return this builder.
+         * @see #rateLimit(RateLimit)
+         */
+        public Builder rateLimits(final Function<String, RateLimit> rateLimits) {
+            this.rateLimits = Objects.requireNonNull(rateLimits);
+            return this;
+        }
+
+        /**
+         * Bounds memory used by the frontier of {@link CrawlMode#LEVEL} crawl.
+         * At most about {@code limit} URLs of the next level are kept in memory,
+         * others are spilled to compressed files in a temporary directory created in the given one,
+         * and at most {@code limit} URLs of the current level are downloaded or extracted at once.
+         * Temporary directory is deleted when the crawl is finished.
+         * By default every URL of the level is kept in memory.
+         *
+         * @param directory directory for temporary files.
+         * @param limit     max number of URLs of a level kept in memory.
+         * @return this builder.
+         */
+        public Builder spillFrontier(final Path directory, final int limit) {
+            if (limit <= 0) {
+                throw new IllegalArgumentException("Frontier limit must be positive: " + limit);
+            }
+            this.spillDirectory = Objects.requireNonNull(directory);
+            this.frontierLimit = limit;
+            return this;
+        }
+
+        /**
+         * Sets receiver of measurements of every crawl of the crawler, such as {@link CrawlStatistics}.
+         * By default nothing is measured, so crawls do not pay for it.
+         *
+         * @param metrics receiver of measurements or {@code null} to measure nothing.
+         * @return this builder.
+         */
+        public Builder metrics(final CrawlMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Limits every crawl of the crawler by pages, bytes, pages per host and time besides its depth.
+         * By default crawls are limited only by depth.
+         *
+         * @param budget limits of every crawl.
+         * @return this builder.
+         */
+        public Builder budget(final CrawlBudget budget) {
+            this.budget = Objects.requireNonNull(budget);
+            return this;
+        }
+
+        /**
+         * Limits duration of every {@link Downloader#download(String)} call. Download not finished in time
+         * is interrupted and abandoned: its page is reported with {@link DownloadTimeoutException},
+         * its downloading worker and host slot are released, so a stuck host cannot stop the crawl.
+         * Abandoned download ignoring interruption keeps running in its own virtual thread, not counted by
+         * {@link #downloaders(int)}. Every download is run in a virtual thread handed off from the worker.
+         * By default downloads are not limited.
+         *
+         * @param timeout max duration of a download or {@code null} to wait for downloads forever.
+         * @return this builder.
+         */
+        public Builder downloadTimeout(final Duration timeout) {
+            if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+                throw new IllegalArgumentException("Download timeout must be positive: " + timeout);
+            }
+            this.downloadTimeout = timeout;
+            return this;
+        }
+
+        /**
+         * Orders every level of {@link CrawlMode#LEVEL} crawl by priority of URLs, so the most valuable pages
+         * of the level are downloaded first, especially when the crawl is cut short by its {@link #budget}.
+         * Priority is computed for every normalized URL once, when it enters the frontier, so it should be fast.
+         * To keep the order, at most four URLs per downloader are downloaded or extracted at once,
+         * so a slow host holding many of them slows the level down.
+         * {@link CrawlMode#PIPELINED} crawl has no frontier and ignores priorities.
+         * By default every level is downloaded in the order URLs are found.
+         *
+         * @param priority priority of URL in {@code [0, levels)}, greater first. Priorities out of range are clamped.
+         *                 {@code null} to download in the order URLs are found.
+         * @param levels   number of priorities, positive.
+         * @return this builder.
+         */
+        public Builder priority(final ToIntFunction<String> priority, final int levels) {
+            if (levels <= 0) {
+                throw new IllegalArgumentException("Number of priorities must be positive: " + levels);
+            }
+            this.priority = priority;
+            this.priorityLevels = levels;
+            return this;
+        }
+
+        /**
+         * Creates {@code WebCrawler} and starts pools of workers.
+         *
+         * @return new crawler.
+         */
+        public WebCrawler build() {
+            return new WebCrawler(this);
+        }
+    }
+
+    private static class ResultCollector implements ResultSink {
         private final List<String> downloaded = Collections.synchronizedList(new ArrayList<>());
         private final Map<String, IOException> errors = new ConcurrentHashMap<>();
+        private final Set<CrawlBudget.Limit> exhausted = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void onDownloaded(final String url, final Document document) {
+            downloaded.add(url);
+        }
+
+        @Override
+        public void onError(final String url, final IOException exception) {
+            errors.put(url, exception);
+        }
+
+        @Override
+        public void onExhausted(final CrawlBudget.Limit limit) {
+            exhausted.add(limit);
+        }
+
+        public Result toResult() {
+            return new Result(downloaded, errors, exhausted);
+        }
+    }
+
+    private abstract class DownloadRunner {
+        private final SubstringMatcher excluded;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final Checkpoint checkpoint;
+        private final long started = System.nanoTime();
+        private final LongAdder downloaded = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder frontier = new LongAdder();
+        /** Remaining depth of the deepest started download, racy as it only decreases by levels. */
+        private volatile int depth = Integer.MAX_VALUE;
+        private final Set<CrawlBudget.Limit> exhausted = ConcurrentHashMap.newKeySet();
+        private volatile boolean overBudget;
+        /** Downloaded and running pages, counted if limited by the budget. */
+        private final AtomicLong pages = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final ConcurrentMap<HostId, AtomicInteger> hostPages = new ConcurrentHashMap<>();
+        final VisitedSet visited = visitedSets.get();
+        final ResultSink sink;
+
+        DownloadRunner(final Set<String> excludes, final ResultSink sink, final Checkpoint checkpoint) {
+            this.excluded = new SubstringMatcher(excludes);
+            this.sink = sink;
+            this.checkpoint = checkpoint;
+        }
+
+        boolean isExcluded(final String url) {
+            return excluded.matches(url);
+        }
+
+        /**
+         * Returns {@code true} if crawl is completed, cancelled or over budget and no new tasks should be scheduled.
+         */
+        boolean isStopped() {
+            return overBudget || done.isDone();
+        }
+
+        /**
+         * Reserves budget for the download from the host.
+         *
+         * @return {@code false} if the download should not start, either host or the whole crawl is over budget.
+         */
+        boolean startDownload(final HostId host) {
+            if (budget.maxDurationNanos() != Long.MAX_VALUE && System.nanoTime() - started >= budget.maxDurationNanos()) {
+                exhaust(CrawlBudget.Limit.TIME, true);
+                return false;
+            }
+            if (budget.maxPagesPerHost() != Integer.MAX_VALUE) {
+                final AtomicInteger counter = hostPages.computeIfAbsent(host, ignored -> new AtomicInteger());
+                if (counter.incrementAndGet() > budget.maxPagesPerHost()) {
+                    counter.decrementAndGet();
+                    exhaust(CrawlBudget.Limit.HOST_PAGES, false);
+                    return false;
+                }
+            }
+            if (budget.maxPages() != Long.MAX_VALUE && pages.incrementAndGet() > budget.maxPages()) {
+                pages.decrementAndGet();
+                releaseHost(host);
+                exhaust(CrawlBudget.Limit.PAGES, true);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Returns budget reserved for the failed download.
+         */
+        void failDownload(final HostId host) {
+            if (budget.maxPages() != Long.MAX_VALUE) {
+                pages.decrementAndGet();
+            }
+            releaseHost(host);
+        }
+
+        private void releaseHost(final HostId host) {
+            if (budget.maxPagesPerHost() != Integer.MAX_VALUE) {
+                hostPages.get(host).decrementAndGet();
+            }
+        }
+
+        /**
+         * Counts size of the downloaded page against the budget.
+         */
+        void finishDownload(final Document document) {
+            if (budget.maxBytes() != Long.MAX_VALUE && bytes.addAndGet(document.size()) >= budget.maxBytes()) {
+                exhaust(CrawlBudget.Limit.BYTES, true);
+            }
+        }
+
+        /**
+         * Reports limit of the budget hit.
+         *
+         * @param stop whether the whole crawl is over budget.
+         */
+        private void exhaust(final CrawlBudget.Limit limit, final boolean stop) {
+            if (stop) {
+                overBudget = true;
+            }
+            if (exhausted.add(limit)) {
+                sink.onExhausted(limit);
+            }
+        }
+
+        void complete() {
+            done.complete(null);
+        }
+
+        /**
+         * Completes crawl exceptionally, so no new tasks are scheduled.
+         */
+        void fail(final Throwable exception) {
+            done.completeExceptionally(exception);
+        }
+
+        /**
+         * Counts change of the frontier of the depth.
+         */
+        void countFrontier(final int depth, final int delta) {
+            frontier.add(delta);
+            if (metrics != null) {
+                metrics.onFrontier(depth, delta);
+            }
+        }
+
+        /**
+         * Counts started download of the depth.
+         */
+        void countStarted(final int depth) {
+            if (depth < this.depth) {
+                this.depth = depth;
+            }
+        }
+
+        /**
+         * Reports downloaded page to the sink.
+         */
+        void reportDownloaded(final String url, final Document document) {
+            downloaded.increment();
+            sink.onDownloaded(url, document);
+        }
+
+        /**
+         * Reports error of the page of the depth to the sink.
+         */
+        void reportError(final String url, final int depth, final IOException exception) {
+            errors.increment();
+            sink.onError(url, exception);
+            if (metrics != null) {
+                metrics.onError(depth);
+            }
+        }
+
+        Crawl.Progress progress() {
+            final long elapsed = System.nanoTime() - started;
+            final long finished = downloaded.sum() + errors.sum();
+            // URLs dropped by stopped crawl are not counted out of the frontier
+            final long waiting = isStopped() ? 0 : Math.max(frontier.sum(), 0);
+            final Map<String, Integer> busiest = new LinkedHashMap<>();
+            downloadExecutor.busiest(BUSIEST_HOSTS).forEach((host, tasks) -> busiest.put(host.name(), tasks));
+            final int deepest = depth;
+            return new Crawl.Progress(
+                    deepest == Integer.MAX_VALUE ? 0 : deepest,
+                    downloaded.sum(),
+                    errors.sum(),
+                    waiting,
+                    busiest,
+                    Duration.ofNanos(elapsed),
+                    finished == 0 ? null : Duration.ofNanos((long) (elapsed / (double) finished * waiting))
+            );
+        }
+
+        /**
+         * Logs URL entering the frontier to the checkpoint, if any.
+         */
+        void recordFrontier(final String url, final int depth, final boolean first) {
+            if (checkpoint != null && depth > 0) {
+                checkpoint.frontier(url, depth, first);
+            }
+        }
+
+        /**
+         * Logs URL whose page is reported and links are scheduled to the checkpoint, if any.
+         */
+        void recordDone(final String url, final int depth) {
+            if (checkpoint != null) {
+                checkpoint.done(url, depth);
+            }
+        }
 
-        private final Set<String> visited = ConcurrentHashMap.newKeySet();
-        private Phaser incrementDepth;
-        private List<String> nextPending;
+        CompletableFuture<Void> start(final String url, final int depth) {
+            final List<Checkpoint.Entry> unfinished = checkpoint == null ? null : checkpoint.start(url, depth, visited);
+            if (unfinished == null) {
+                schedule(url, depth);
+            } else {
+                resume(unfinished);
+            }
+            return done;
+        }
+
+        abstract void schedule(final String url, final int depth);
+
+        /**
+         * Resumes crawl logged to the checkpoint. Visited URLs are already restored.
+         *
+         * @param unfinished URLs entered the frontier but not finished.
+         */
+        abstract void resume(final List<Checkpoint.Entry> unfinished);
+    }
 
-        public DownloadRunner(final Set<String> excludes) {
-            excluded = excludes;
+    /**
+     * Crawls level by level.
+     * URLs of the level are read from the frontier as download slots are freed,
+     * so at most {@link #MAX_IN_FLIGHT}, the frontier limit or the priority window URLs are scheduled at once.
+     * Every slot is a party of the level phaser, which finished task passes to the next URL of the level.
+     */
+    private class LevelRunner extends DownloadRunner {
+        private final PriorityFrontier nextPending =
+                new PriorityFrontier(frontierLimit, spillDirectory, priority, priorityLevels);
+        /** Unfinished URLs of resumed crawl by their depth. */
+        private final Map<Integer, List<String>> resumed = new HashMap<>();
+        private volatile Phaser incrementDepth;
+        private volatile PriorityFrontier.Cursor pending;
+        private int levelsLeft;
+
+        public LevelRunner(final Set<String> excludes, final ResultSink sink, final Checkpoint checkpoint) {
+            super(excludes, sink, checkpoint);
         }
 
         private void markError(final String url, final IOException exception) {
-            errors.put(url, exception);
+            reportError(url, exception);
+            next();
+        }
+
+        private void reportError(final String url, final IOException exception) {
+            reportError(url, levelsLeft + 1, exception);
+            recordDone(url, levelsLeft + 1);
+        }
+
+        private void finish(final String url) {
+            recordDone(url, levelsLeft + 1);
+            next();
+        }
+
+        /**
+         * Passes slot of the finished task to the next URL of the level or arrives if there is none.
+         */
+        private void next() {
+            try {
+                while (!isStopped()) {
+                    final String url = pending.poll();
+                    if (url == null) {
+                        break;
+                    }
+                    if (addDownloadTask(url)) {
+                        return;
+                    }
+                }
+            } catch (final UncheckedIOException e) {
+                fail(e);
+            }
             incrementDepth.arrive();
         }
 
-        public void addDownloadTask(final String url) {
-            final String host;
+        /**
+         * Schedules download of the URL.
+         *
+         * @return {@code false} if URL is malformed and slot is still free.
+         */
+        public boolean addDownloadTask(final String url) {
+            final int depth = levelsLeft + 1;
+            final HostId host;
             try {
-                host = URLUtils.getHost(url);
+                host = getHost(url);
             } catch (final MalformedURLException e) {
-                markError(url, e);
-                return;
+                countFrontier(depth, -1);
+                reportError(url, e);
+                return false;
             }
+            countBacklog(host, 1);
             try {
                 downloadExecutor.execute(() -> {
+                    countFrontier(depth, -1);
+                    countBacklog(host, -1);
+                    if (isStopped()) {
+                        incrementDepth.arrive();
+                        return;
+                    }
+                    if (!startDownload(host)) {
+                        if (isStopped()) {
+                            incrementDepth.arrive();
+                        } else {
+                            finish(url);
+                        }
+                        return;
+                    }
+                    countStarted(depth);
                     final Document document;
                     try {
-                        document = downloader.download(url);
+                        document = fetch(url, host);
                     } catch (final IOException e) {
+                        failDownload(host);
                         markError(url, e);
                         return;
                     }
-                    downloaded.add(url);
+                    finishDownload(document);
+                    reportDownloaded(url, document);
                     addExtractTask(document, url);
                 }, host);
             } catch (RejectedExecutionException e) {
+                countFrontier(depth, -1);
+                countBacklog(host, -1);
                 incrementDepth.arrive();
             }
+            return true;
         }
 
         private void addExtractTask(final Document document, final String extractUrl) {
+            if (isStopped()) {
+                incrementDepth.arrive();
+                return;
+            }
             try {
                 extractExecutor.execute(() -> {
                     final List<String> urls;
                     try {
-                        urls = document.extractLinks();
+                        urls = extractLinks(document);
                     } catch (final IOException e) {
                         markError(extractUrl, e);
                         return;
                     }
-                    nextPending.addAll(urls.stream().filter(this::needsDownloading).toList());
-                    incrementDepth.arrive();
+                    final List<String> links = new ArrayList<>(urls.size());
+                    for (final String link : urls) {
+                        final String url = normalize(link);
+                        if (needsDownloading(url, levelsLeft)) {
+                            links.add(url);
+                        }
+                    }
+                    try {
+                        nextPending.addAll(links);
+                    } catch (final UncheckedIOException e) {
+                        fail(e);
+                    }
+                    finish(extractUrl);
                 });
             } catch (final RejectedExecutionException ignored) {
                 incrementDepth.arrive();
             }
         }
 
-        private boolean needsDownloading(final String url) {
-            return excluded.stream().noneMatch(url::contains) && markVisited(url);
+        private boolean needsDownloading(final String url, final int depth) {
+            if (isExcluded(url) || visited.add(url, depth) != VisitedSet.NOT_VISITED) {
+                return false;
+            }
+            recordFrontier(url, depth, true);
+            if (depth > 0) {
+                countFrontier(depth, 1);
+            }
+            return true;
         }
 
-        private boolean markVisited(final String url) {
-            return visited.add(url);
+        /**
+         * Starts downloading of the next level.
+         * Called when every task of the current level has arrived, so frontier is not accessed concurrently.
+         */
+        private void nextLevel() {
+            try {
+                if (pending != null) {
+                    pending.close();
+                }
+                final List<String> resumedPending = resumed.remove(levelsLeft);
+                if (resumedPending != null) {
+                    countFrontier(levelsLeft, resumedPending.size());
+                    nextPending.addAll(resumedPending);
+                }
+                pending = nextPending.drain();
+            } catch (final UncheckedIOException e) {
+                fail(e);
+            }
+            if (levelsLeft-- == 0 || isStopped() || pending.size() == 0) {
+                deleteFrontier();
+                complete();
+                return;
+            }
+            final int slots = (int) Math.min(pending.size(), inFlight);
+            final Phaser phaser = new Phaser(slots + 1) {
+                @Override
+                protected boolean onAdvance(final int phase, final int registeredParties) {
+                    nextLevel();
+                    return true;
+                }
+            };
+            incrementDepth = phaser;
+            for (int i = 0; i < slots; i++) {
+                next();
+            }
+            phaser.arrive();
         }
 
-        public Result download(final String url, final int depth) {
-            if (needsDownloading(url)) {
-                nextPending = Collections.synchronizedList(new ArrayList<>());
-                List<String> pending = Collections.synchronizedList(new ArrayList<>());
-                nextPending.add(url);
-                for (int i = 0; i < depth; ++i) {
-                    incrementDepth = new Phaser(nextPending.size() + 1);
-                    final List<String> temp = pending;
-                    pending = nextPending;
-                    nextPending = temp;
-                    nextPending.clear();
-                    pending.forEach(this::addDownloadTask);
-                    incrementDepth.arriveAndAwaitAdvance();
+        /**
+         * Deletes files of the frontier.
+         */
+        private void deleteFrontier() {
+            try {
+                if (pending != null) {
+                    pending.close();
                 }
+                nextPending.close();
+            } catch (final UncheckedIOException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        void schedule(final String url, final int depth) {
+            final String start = normalize(url);
+            if (needsDownloading(start, depth)) {
+                nextPending.add(start);
+            }
+            levelsLeft = depth;
+            nextLevel();
+        }
+
+        @Override
+        void resume(final List<Checkpoint.Entry> unfinished) {
+            for (final Checkpoint.Entry entry : unfinished) {
+                resumed.computeIfAbsent(entry.depth(), ignored -> new ArrayList<>()).add(entry.url());
+                levelsLeft = Math.max(levelsLeft, entry.depth());
+            }
+            nextLevel();
+        }
+    }
+
+    /**
+     * Crawls without level barriers.
+     * Every task carries remaining depth of its URL, completion is tracked by the number of outstanding tasks.
+     * URL reached again with greater remaining depth is downloaded again to expand its links deeper,
+     * but recorded in the result only once, so the result matches {@link LevelRunner}.
+     */
+    private class PipelinedRunner extends DownloadRunner {
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        public PipelinedRunner(final Set<String> excludes, final ResultSink sink, final Checkpoint checkpoint) {
+            super(excludes, sink, checkpoint);
+        }
+
+        private void finishTask() {
+            if (outstanding.decrementAndGet() == 0) {
+                complete();
+            }
+        }
+
+        private void markError(final String url, final int depth, final IOException exception, final boolean first) {
+            if (first) {
+                reportError(url, depth, exception);
+            }
+            recordDone(url, depth);
+            finishTask();
+        }
+
+        private void addDownloadTask(final String url, final int depth, final boolean first) {
+            outstanding.incrementAndGet();
+            recordFrontier(url, depth, first);
+            countFrontier(depth, 1);
+            final HostId host;
+            try {
+                host = getHost(url);
+            } catch (final MalformedURLException e) {
+                countFrontier(depth, -1);
+                markError(url, depth, e, first);
+                return;
+            }
+            countBacklog(host, 1);
+            try {
+                downloadExecutor.execute(() -> {
+                    countFrontier(depth, -1);
+                    countBacklog(host, -1);
+                    if (isStopped()) {
+                        finishTask();
+                        return;
+                    }
+                    if (!startDownload(host)) {
+                        if (!isStopped()) {
+                            recordDone(url, depth);
+                        }
+                        finishTask();
+                        return;
+                    }
+                    countStarted(depth);
+                    final Document document;
+                    try {
+                        document = fetch(url, host);
+                    } catch (final IOException e) {
+                        failDownload(host);
+                        markError(url, depth, e, first);
+                        return;
+                    }
+                    finishDownload(document);
+                    if (first) {
+                        reportDownloaded(url, document);
+                    }
+                    addExtractTask(document, url, depth, first);
+                }, host);
+            } catch (final RejectedExecutionException e) {
+                countFrontier(depth, -1);
+                countBacklog(host, -1);
+                finishTask();
+            }
+        }
+
+        private void addExtractTask(final Document document, final String extractUrl, final int depth, final boolean first) {
+            if (isStopped()) {
+                finishTask();
+                return;
+            }
+            try {
+                extractExecutor.execute(() -> {
+                    final List<String> urls;
+                    try {
+                        urls = extractLinks(document);
+                    } catch (final IOException e) {
+                        markError(extractUrl, depth, e, first);
+                        return;
+                    }
+                    if (isStopped()) {
+                        // Links are not scheduled, so page stays unfinished in the checkpoint
+                        finishTask();
+                        return;
+                    }
+                    if (depth > 1) {
+                        urls.forEach(link -> scheduleLink(link, depth - 1));
+                    }
+                    recordDone(extractUrl, depth);
+                    finishTask();
+                });
+            } catch (final RejectedExecutionException ignored) {
+                finishTask();
+            }
+        }
+
+        private void scheduleLink(final String link, final int depth) {
+            final String url = normalize(link);
+            if (isExcluded(url)) {
+                return;
+            }
+            final int previous = visited.add(url, depth);
+            if (previous < depth) {
+                addDownloadTask(url, depth, previous == VisitedSet.NOT_VISITED);
+            }
+        }
+
+        @Override
+        void schedule(final String url, final int depth) {
+            outstanding.incrementAndGet();
+            if (depth > 0) {
+                scheduleLink(url, depth);
+            }
+            finishTask();
+        }
+
+        @Override
+        void resume(final List<Checkpoint.Entry> unfinished) {
+            outstanding.incrementAndGet();
+            for (final Checkpoint.Entry entry : unfinished) {
+                addDownloadTask(entry.url(), entry.depth(), entry.first());
             }
-            return new Result(downloaded, errors);
+            finishTask();
         }
     }
 }